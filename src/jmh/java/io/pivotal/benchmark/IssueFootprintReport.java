@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import io.pivotal.jira.JiraComment;
+import io.pivotal.jira.JiraInterningModule;
+import io.pivotal.jira.JiraIssue;
+import org.joda.time.DateTime;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Reports the heap retained by synthetic {@link JiraIssue}s, as served by
+ * {@link SimulatedJira}, when loaded with and without the
+ * {@link JiraInterningModule}, and the heap that the timestamps of the same
+ * issues would take as Joda {@code DateTime} objects rather than epoch millis.
+ *
+ * <p>The number of issues is set with "-Dsim.issues", e.g. "-Dsim.issues=20000".
+ * Measurements are based on used heap after GC, so run with a fixed heap size,
+ * e.g. "-Xms2g -Xmx2g", for stable results.
+ */
+public class IssueFootprintReport {
+
+	public static void main(String[] args) throws Exception {
+		SimulatorSettings settings = new SimulatorSettings();
+		if (System.getProperty("sim.issues") == null) {
+			settings.setIssues(20000);
+		}
+
+		List<byte[]> json = new ArrayList<>(settings.getIssues());
+		try (SimulatedJira jira = new SimulatedJira(settings)) {
+			ObjectMapper writer = new ObjectMapper();
+			for (int i = 1; i <= settings.getIssues(); i++) {
+				json.add(writer.writeValueAsBytes(jira.issue(i)));
+			}
+		}
+
+		long plain = measure(json, Jackson2ObjectMapperBuilder.json()
+				.modulesToInstall(new JodaModule())
+				.build());
+
+		JiraInterningModule interningModule = new JiraInterningModule();
+		long interned = measure(json, Jackson2ObjectMapperBuilder.json()
+				.modulesToInstall(new JodaModule(), interningModule)
+				.build());
+
+		long dateTimes = measureDateTimes(json, Jackson2ObjectMapperBuilder.json()
+				.modulesToInstall(new JodaModule())
+				.build());
+
+		System.out.println();
+		System.out.printf("Heap retained by %d issues:%n", settings.getIssues());
+		System.out.printf("  without interning:  %,12d bytes (%,d per issue)%n", plain, plain / json.size());
+		System.out.printf("  with interning:     %,12d bytes (%,d per issue), %d canonical values%n",
+				interned, interned / json.size(), interningModule.getCanonicalValueCount());
+		System.out.printf("  saved:              %,12d bytes (%.1f%%)%n",
+				plain - interned, 100d * (plain - interned) / plain);
+		System.out.printf("Timestamps as DateTime instead of epoch millis would add %,d bytes%n", dateTimes);
+	}
+
+	private static long measure(List<byte[]> json, ObjectMapper objectMapper) throws Exception {
+		long before = usedHeapAfterGc();
+		List<JiraIssue> issues = new ArrayList<>(json.size());
+		for (byte[] content : json) {
+			issues.add(objectMapper.readValue(content, JiraIssue.class));
+		}
+		long after = usedHeapAfterGc();
+		if (issues.size() != json.size()) {
+			throw new IllegalStateException();
+		}
+		return after - before;
+	}
+
+	/**
+	 * Approximate the heap that timestamps would add as {@code DateTime}
+	 * objects, compared to {@code long} fields.
+	 */
+	private static long measureDateTimes(List<byte[]> json, ObjectMapper objectMapper) throws Exception {
+		List<Long> millis = new ArrayList<>();
+		for (byte[] content : json) {
+			JiraIssue.Fields fields = objectMapper.readValue(content, JiraIssue.class).getFields();
+			millis.add(fields.getCreated().getMillis());
+			millis.add(fields.getUpdated().getMillis());
+			for (JiraComment comment : fields.getComment().getComments()) {
+				millis.add(comment.getCreated().getMillis());
+			}
+		}
+		DateTime[] dateTimes = new DateTime[millis.size()];
+		long before = usedHeapAfterGc();
+		for (int i = 0; i < dateTimes.length; i++) {
+			dateTimes[i] = new DateTime(millis.get(i).longValue());
+		}
+		long after = usedHeapAfterGc();
+		if (dateTimes[dateTimes.length - 1] == null) {
+			throw new IllegalStateException();
+		}
+		// Each DateTime replaces an 8 byte long field with a reference
+		return after - before - 4L * dateTimes.length;
+	}
+
+	private static long usedHeapAfterGc() throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.post.JiraLinkConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark for {@link JiraLinkConverter#convert(String)} over a {@link MarkupCorpus}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JiraLinkConverterBenchmark {
+
+	@Param({"tests", "large"})
+	public String corpus;
+
+	private List<String> inputs;
+
+	private JiraLinkConverter converter;
+
+
+	@Setup
+	public void setup() throws IOException {
+		this.converter = new JiraLinkConverter(MarkupCorpus.JIRA_BASE_URL, MarkupCorpus.JIRA_PROJECT,
+				MarkupCorpus.issueMappings(), Writer.nullWriter());
+		this.inputs = MarkupCorpus.githubMarkdown(this.corpus);
+	}
+
+
+	@Benchmark
+	public void convert(Blackhole blackhole) {
+		for (String input : this.inputs) {
+			blackhole.consume(this.converter.convert(input));
+		}
+	}
+
+}
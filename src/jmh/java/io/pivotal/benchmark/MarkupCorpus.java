@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Inputs for the markup benchmarks: the bodies used in the engine tests, plus
+ * synthetic bodies that are large or full of stray emphasis delimiters.
+ */
+final class MarkupCorpus {
+
+	static final String JIRA_BASE_URL = "https://jira-stage.spring.io";
+
+	static final String JIRA_PROJECT = "SPR";
+
+	private static final int LARGE_BODY_LENGTH = 64 * 1024;
+
+	private static final int LINK_COUNT = 500;
+
+
+	private MarkupCorpus() {
+	}
+
+
+	/**
+	 * Jira wiki markup, as found in issue descriptions and comments.
+	 * @param name "tests", "large", or "delimiters"
+	 */
+	static List<String> jiraMarkup(String name) throws IOException {
+		List<String> bodies = read("jira-markup-corpus.json");
+		switch (name) {
+			case "tests":
+				return bodies;
+			case "large":
+				return Collections.singletonList(concatenate(bodies));
+			case "delimiters":
+				// Stray "*" on every line, like imports and globs in pasted code
+				return Collections.singletonList(
+						"import java.io.*;\nimport org.springframework.core.io.*;\n".repeat(2000));
+			default:
+				throw new IllegalArgumentException("Unknown corpus: " + name);
+		}
+	}
+
+	/**
+	 * GitHub markdown with links to Jira issues, as created by the migration.
+	 * @param name "tests" or "large"
+	 */
+	static List<String> githubMarkdown(String name) throws IOException {
+		switch (name) {
+			case "tests":
+				return read("github-markdown-corpus.json");
+			case "large":
+				StringBuilder sb = new StringBuilder("**Issue Links:**\n");
+				for (int i = 1; i <= LINK_COUNT; i++) {
+					String key = JIRA_PROJECT + "-" + i;
+					sb.append("- [").append(key).append("](").append(JIRA_BASE_URL).append("/browse/").append(key)
+							.append(") Some summary of the linked issue\n");
+				}
+				for (int i = 1; i <= LINK_COUNT; i++) {
+					sb.append("See ").append(JIRA_BASE_URL).append("/browse/").append(JIRA_PROJECT).append("-")
+							.append(i).append(" for details.\n");
+				}
+				return Collections.singletonList(sb.toString());
+			default:
+				throw new IllegalArgumentException("Unknown corpus: " + name);
+		}
+	}
+
+	/**
+	 * Jira key to GitHub issue number mappings for all keys in {@link #githubMarkdown}.
+	 */
+	static Map<String, Integer> issueMappings() {
+		Map<String, Integer> mappings = new HashMap<>();
+		for (int i = 1; i <= 20000; i++) {
+			mappings.put(JIRA_PROJECT + "-" + i, i);
+		}
+		return mappings;
+	}
+
+	private static List<String> read(String resource) throws IOException {
+		try (InputStream in = MarkupCorpus.class.getResourceAsStream(resource)) {
+			if (in == null) {
+				throw new IllegalStateException("Resource not found: " + resource);
+			}
+			return new ObjectMapper().readValue(in, new TypeReference<List<String>>() {});
+		}
+	}
+
+	private static String concatenate(List<String> bodies) {
+		StringBuilder sb = new StringBuilder(LARGE_BODY_LENGTH + 4096);
+		for (int i = 0; sb.length() < LARGE_BODY_LENGTH; i++) {
+			sb.append(bodies.get(i % bodies.size())).append("\n\n");
+		}
+		return sb.toString();
+	}
+
+}
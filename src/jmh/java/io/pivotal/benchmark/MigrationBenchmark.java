@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.pivotal.migration.MigrationApp;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.StopWatch;
+
+/**
+ * Runs {@link MigrationApp} end-to-end against {@link SimulatedJira} and
+ * {@link SimulatedGitHub}, and reports issues/sec along with the time spent in
+ * each phase and the requests served by each simulator.
+ *
+ * <p>See {@link SimulatorSettings} for the system properties to configure the
+ * simulators with, e.g. "-Dsim.issues=1000 -Dsim.latency=50".
+ */
+public class MigrationBenchmark {
+
+	private static final String REPOSITORY_SLUG = "simulated/migration";
+
+
+	public static void main(String[] args) throws Exception {
+		SimulatorSettings settings = new SimulatorSettings();
+		File workDir = Files.createTempDirectory("migration-benchmark").toFile();
+
+		try (SimulatedJira jira = new SimulatedJira(settings);
+				SimulatedGitHub github = new SimulatedGitHub(settings, REPOSITORY_SLUG)) {
+
+			Map<String, Object> properties = new LinkedHashMap<>();
+			properties.put("jira.base-url", jira.getBaseUrl());
+			properties.put("jira.projectId", SimulatedJira.PROJECT);
+			properties.put("jira.migrate-jql", "project = " + SimulatedJira.PROJECT);
+			properties.put("github.api-url", github.getBaseUrl());
+			properties.put("github.repository-slug", REPOSITORY_SLUG);
+			properties.put("github.access-token", "simulated");
+			properties.put("github.delete-create-repository-slug", "false");
+			properties.put("migration.mappings-file", new File(workDir, "github-issue-mappings.properties").getPath());
+			properties.put("migration.failures-file", new File(workDir, "github-migration-failures.txt").getPath());
+			properties.put("migration.state-file", new File(workDir, "github-migration-state.log").getPath());
+
+			long startTime = System.nanoTime();
+			ConfigurableApplicationContext context = new SpringApplicationBuilder(MigrationApp.class)
+					.web(WebApplicationType.NONE)
+					.properties(properties)
+					.run(args);
+			double seconds = (System.nanoTime() - startTime) / 1_000_000_000d;
+
+			StopWatch stopWatch = context.getBean(MigrationApp.class).getStopWatch();
+			context.close();
+
+			System.out.println();
+			System.out.printf("Migrated %d of %d issues in %.1f s: %.2f issues/sec%n",
+					github.getImportedCount(), settings.getIssues(), seconds, github.getImportedCount() / seconds);
+			System.out.println(stopWatch.prettyPrint());
+			System.out.println("Jira requests: " + jira.getRequestCounts());
+			System.out.println("GitHub requests: " + github.getRequestCounts());
+			System.out.println("Mappings and failures in " + workDir);
+		}
+	}
+
+}
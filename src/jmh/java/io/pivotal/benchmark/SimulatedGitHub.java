@@ -0,0 +1,185 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the GitHub REST API endpoints used by
+ * {@link io.pivotal.migration.MigrationClient}: milestones, labels, issue
+ * imports, and import status, with "X-RateLimit-*" headers on every response.
+ */
+class SimulatedGitHub extends StubServer {
+
+	private static final Pattern importStatusPattern = Pattern.compile("/repos/[^/]+/[^/]+/import/issues/(\\d+)");
+
+
+	private final String repositoryPath;
+
+	private final List<Map<String, Object>> milestones = Collections.synchronizedList(new ArrayList<>());
+
+	private final List<Map<String, Object>> labels = Collections.synchronizedList(new ArrayList<>());
+
+	private final Map<Integer, Import> imports = new ConcurrentHashMap<>();
+
+	private final AtomicInteger importCounter = new AtomicInteger();
+
+	private final AtomicInteger issueCounter = new AtomicInteger();
+
+	private final Object rateLimitMonitor = new Object();
+
+	private long rateLimitReset;
+
+	private int rateLimitRemaining;
+
+
+	SimulatedGitHub(SimulatorSettings settings, String repositorySlug) throws IOException {
+		super(settings);
+		this.repositoryPath = "/repos/" + repositorySlug;
+	}
+
+
+	/**
+	 * Number of issues with status "imported".
+	 */
+	int getImportedCount() {
+		return this.issueCounter.get();
+	}
+
+	@Override
+	protected Response handle(String method, String path, String query, Map<String, Object> body) {
+		Response response = route(method, path, query, body);
+		synchronized (this.rateLimitMonitor) {
+			long now = System.currentTimeMillis() / 1000;
+			if (now >= this.rateLimitReset) {
+				this.rateLimitReset = now + this.settings.getRateLimitWindow();
+				this.rateLimitRemaining = this.settings.getRateLimit();
+			}
+			this.rateLimitRemaining = Math.max(0, this.rateLimitRemaining - 1);
+			response.header("X-RateLimit-Limit", String.valueOf(this.settings.getRateLimit()));
+			response.header("X-RateLimit-Remaining", String.valueOf(this.rateLimitRemaining));
+			response.header("X-RateLimit-Reset", String.valueOf(this.rateLimitReset));
+		}
+		return response;
+	}
+
+	private Response route(String method, String path, String query, Map<String, Object> body) {
+		if (path.equals(this.repositoryPath + "/milestones")) {
+			return method.equals("POST") ? createMilestone(body) : listMilestones(parseQuery(query));
+		}
+		if (path.equals(this.repositoryPath + "/labels")) {
+			if (method.equals("POST")) {
+				this.labels.add(new LinkedHashMap<>(body));
+				return new Response("create label", 201, body);
+			}
+			return new Response("list labels", 200, getPage(this.labels, parseQuery(query)));
+		}
+		if (path.equals(this.repositoryPath + "/import/issues") && method.equals("POST")) {
+			return createImport();
+		}
+		Matcher matcher = importStatusPattern.matcher(path);
+		if (matcher.matches() && method.equals("GET")) {
+			return getImportStatus(Integer.parseInt(matcher.group(1)));
+		}
+		return new Response("unknown", 404, Collections.singletonMap("message", "Not Found"));
+	}
+
+	private Response createMilestone(Map<String, Object> body) {
+		Map<String, Object> milestone = new LinkedHashMap<>(body);
+		synchronized (this.milestones) {
+			milestone.put("number", this.milestones.size() + 1);
+			this.milestones.add(milestone);
+		}
+		return new Response("create milestone", 201, milestone);
+	}
+
+	private Response listMilestones(Map<String, String> params) {
+		return new Response("list milestones", 200, getPage(this.milestones, params));
+	}
+
+	private static List<Map<String, Object>> getPage(List<Map<String, Object>> items, Map<String, String> params) {
+		int perPage = Integer.parseInt(params.getOrDefault("per_page", "30"));
+		int page = Integer.parseInt(params.getOrDefault("page", "1"));
+		synchronized (items) {
+			int from = Math.min((page - 1) * perPage, items.size());
+			return new ArrayList<>(items.subList(from, Math.min(from + perPage, items.size())));
+		}
+	}
+
+	private Response createImport() {
+		int id = this.importCounter.incrementAndGet();
+		boolean fail = ThreadLocalRandom.current().nextInt(100) < this.settings.getFailurePercentage();
+		this.imports.put(id, new Import(fail));
+		return new Response("create import", 202, importStatus(id, "pending"));
+	}
+
+	private Response getImportStatus(int id) {
+		Import imported = this.imports.get(id);
+		if (imported == null) {
+			return new Response("import status", 404, Collections.singletonMap("message", "Not Found"));
+		}
+		synchronized (imported) {
+			if (imported.polls++ < this.settings.getPendingPolls()) {
+				return new Response("import status", 200, importStatus(id, "pending"));
+			}
+			if (imported.failed) {
+				Map<String, Object> status = importStatus(id, "failed");
+				status.put("errors", Collections.singletonList(Collections.singletonMap("code", "simulated")));
+				return new Response("import status", 200, status);
+			}
+			if (imported.issueNumber == 0) {
+				imported.issueNumber = this.issueCounter.incrementAndGet();
+			}
+			Map<String, Object> status = importStatus(id, "imported");
+			status.put("issue_url", getBaseUrl() + this.repositoryPath + "/issues/" + imported.issueNumber);
+			return new Response("import status", 200, status);
+		}
+	}
+
+	private Map<String, Object> importStatus(int id, String status) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("id", id);
+		result.put("status", status);
+		result.put("url", getBaseUrl() + this.repositoryPath + "/import/issues/" + id);
+		return result;
+	}
+
+
+	private static class Import {
+
+		final boolean failed;
+
+		int polls;
+
+		int issueNumber;
+
+
+		Import(boolean failed) {
+			this.failed = failed;
+		}
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the Jira REST API endpoints used by {@link io.pivotal.jira.JiraClient}:
+ * project, search, votes, and dev-status, serving synthetic issues with
+ * descriptions and comments taken from the {@link MarkupCorpus}.
+ */
+class SimulatedJira extends StubServer {
+
+	static final String PROJECT = "SPR";
+
+	static final List<String> VERSIONS = Arrays.asList("5.0 GA", "4.3.12", "4.3.11");
+
+	private static final Pattern votesPattern = Pattern.compile("/rest/api/2/issue/(\\d+)/votes");
+
+	private static final String TIMESTAMP = "2017-06-01T10:15:30.000+0000";
+
+
+	private final List<String> bodies;
+
+
+	SimulatedJira(SimulatorSettings settings) throws IOException {
+		super(settings);
+		this.bodies = MarkupCorpus.jiraMarkup("tests");
+	}
+
+
+	@Override
+	protected Response handle(String method, String path, String query, Map<String, Object> body) {
+		if (path.equals("/rest/api/2/project/" + PROJECT)) {
+			return new Response("project", 200, project());
+		}
+		if (path.equals("/rest/api/2/search")) {
+			return new Response("search", 200, search(parseQuery(query)));
+		}
+		Matcher matcher = votesPattern.matcher(path);
+		if (matcher.matches()) {
+			return new Response("votes", 200, Collections.singletonMap("votes", votes(Integer.parseInt(matcher.group(1)))));
+		}
+		if (path.equals("/rest/dev-status/1.0/issue/detail")) {
+			return new Response("dev-status", 200, devStatus(parseQuery(query).get("issueId")));
+		}
+		return new Response("unknown", 404, null);
+	}
+
+	private Map<String, Object> project() {
+		List<Map<String, Object>> versions = new ArrayList<>();
+		for (String name : VERSIONS) {
+			Map<String, Object> version = new LinkedHashMap<>();
+			version.put("name", name);
+			version.put("released", true);
+			version.put("releaseDate", "2017-09-28");
+			versions.add(version);
+		}
+		Map<String, Object> project = new LinkedHashMap<>();
+		project.put("versions", versions);
+		project.put("components", Collections.emptyList());
+		project.put("issueTypes", Collections.emptyList());
+		return project;
+	}
+
+	private Map<String, Object> search(Map<String, String> params) {
+		int total = this.settings.getIssues();
+		int startAt = Integer.parseInt(params.getOrDefault("startAt", "0"));
+		int maxResults = Math.min(Integer.parseInt(params.getOrDefault("maxResults", "50")), this.settings.getSearchPageCap());
+		boolean votes = Arrays.asList(params.getOrDefault("fields", "").split(",")).contains("votes");
+		List<Map<String, Object>> issues = new ArrayList<>();
+		for (int i = startAt; i < Math.min(startAt + maxResults, total); i++) {
+			Map<String, Object> issue = issue(i + 1);
+			if (votes) {
+				getFields(issue).put("votes", Collections.singletonMap("votes", votes(10000 + i + 1)));
+			}
+			issues.add(issue);
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("startAt", startAt);
+		result.put("maxResults", maxResults);
+		result.put("total", total);
+		result.put("issues", issues);
+		return result;
+	}
+
+	Map<String, Object> issue(int number) {
+		Map<String, Object> fields = new LinkedHashMap<>();
+		fields.put("summary", "Synthetic issue number " + number);
+		fields.put("description", this.bodies.get(number % this.bodies.size()));
+		fields.put("issuetype", Collections.singletonMap("name", number % 3 == 0 ? "Improvement" : "Bug"));
+		fields.put("created", TIMESTAMP);
+		fields.put("updated", TIMESTAMP);
+		fields.put("comment", Collections.singletonMap("comments", comments(number)));
+		fields.put("components", Collections.emptyList());
+		fields.put("versions", Collections.emptyList());
+		fields.put("fixVersions", fixVersions(number));
+		fields.put("status", Collections.singletonMap("name", "Closed"));
+		fields.put("resolution", Collections.singletonMap("name", "Fixed"));
+		fields.put("reporter", user(number % 50));
+		fields.put("issuelinks", Collections.emptyList());
+		fields.put("subtasks", Collections.emptyList());
+		fields.put("labels", Collections.emptyList());
+		fields.put("attachment", Collections.emptyList());
+		fields.put("watches", Collections.singletonMap("watchCount", number % 7));
+
+		Map<String, Object> issue = new LinkedHashMap<>();
+		issue.put("id", String.valueOf(10000 + number));
+		issue.put("key", PROJECT + "-" + number);
+		issue.put("self", getBaseUrl() + "/rest/api/2/issue/" + (10000 + number));
+		issue.put("fields", fields);
+		return issue;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> getFields(Map<String, Object> issue) {
+		return (Map<String, Object>) issue.get("fields");
+	}
+
+	private static int votes(int issueId) {
+		return issueId % 12;
+	}
+
+	private List<Map<String, Object>> comments(int number) {
+		List<Map<String, Object>> comments = new ArrayList<>();
+		for (int i = 0; i < number % 5; i++) {
+			Map<String, Object> comment = new LinkedHashMap<>();
+			comment.put("author", user(number + i));
+			comment.put("created", TIMESTAMP);
+			comment.put("body", this.bodies.get((number + i + 1) % this.bodies.size()));
+			comments.add(comment);
+		}
+		return comments;
+	}
+
+	private List<Map<String, Object>> fixVersions(int number) {
+		// Every 10th issue is backported, which creates backport issue holders
+		List<String> names = (number % 10 == 0 ? VERSIONS.subList(0, 2) : VERSIONS.subList(0, 1));
+		List<Map<String, Object>> versions = new ArrayList<>();
+		names.forEach(name -> versions.add(Collections.singletonMap("name", name)));
+		return versions;
+	}
+
+	private Map<String, Object> user(int number) {
+		Map<String, Object> user = new LinkedHashMap<>();
+		user.put("key", "user" + number);
+		user.put("displayName", "User " + number);
+		user.put("self", getBaseUrl() + "/rest/api/2/user?username=user" + number);
+		return user;
+	}
+
+	private Map<String, Object> devStatus(String issueId) {
+		List<Map<String, Object>> commits = new ArrayList<>();
+		if (issueId != null && Integer.parseInt(issueId) % 4 == 0) {
+			commits.add(Collections.singletonMap("url", "https://github.com/spring-projects/spring-framework/commit/" + issueId));
+		}
+		Map<String, Object> repository = Collections.singletonMap("commits", commits);
+		Map<String, Object> detail = Collections.singletonMap("repositories", Collections.singletonList(repository));
+		return Collections.singletonMap("detail", Collections.singletonList(detail));
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import lombok.Data;
+
+/**
+ * Behavior of the simulated Jira and GitHub servers, initialized from system
+ * properties with the "sim." prefix, e.g. "-Dsim.issues=1000".
+ */
+@Data
+class SimulatorSettings {
+
+	/** Number of synthetic Jira issues. */
+	int issues = Integer.getInteger("sim.issues", 200);
+
+	/** Fixed latency added to every response, in milliseconds. */
+	int latency = Integer.getInteger("sim.latency", 20);
+
+	/** Random latency added on top of the fixed latency, in milliseconds. */
+	int latencyJitter = Integer.getInteger("sim.latency-jitter", 30);
+
+	/** Maximum page size for Jira searches, like the server-side cap in Jira. */
+	int searchPageCap = Integer.getInteger("sim.search-page-cap", 1000);
+
+	/** Number of times an import status is reported as "pending" before it is resolved. */
+	int pendingPolls = Integer.getInteger("sim.pending-polls", 2);
+
+	/** Percentage of imports that end with status "failed". */
+	int failurePercentage = Integer.getInteger("sim.failure-percentage", 0);
+
+	/** Request budget per rate limit window, reported via "X-RateLimit-*" headers. */
+	int rateLimit = Integer.getInteger("sim.rate-limit", 5000);
+
+	/** Length of the rate limit window, in seconds. */
+	int rateLimitWindow = Integer.getInteger("sim.rate-limit-window", 3600);
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Base class for a stand-in HTTP server that serves JSON with simulated
+ * latency and keeps count of requests per route.
+ */
+abstract class StubServer implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger(StubServer.class);
+
+
+	protected final SimulatorSettings settings;
+
+	protected final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final HttpServer server;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+
+	StubServer(SimulatorSettings settings) throws IOException {
+		this.settings = settings;
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/", this::handleExchange);
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+
+
+	String getBaseUrl() {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort();
+	}
+
+	/**
+	 * Number of requests served per route, as named by {@link #handle}.
+	 */
+	Map<String, Integer> getRequestCounts() {
+		Map<String, Integer> counts = new TreeMap<>();
+		this.requestCounts.forEach((route, count) -> counts.put(route, count.get()));
+		return counts;
+	}
+
+	private void handleExchange(HttpExchange exchange) throws IOException {
+		try {
+			simulateLatency();
+			Response response = handle(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+					exchange.getRequestURI().getRawQuery(), readBody(exchange));
+			this.requestCounts.computeIfAbsent(response.route, route -> new AtomicInteger()).incrementAndGet();
+			response.headers.forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+			byte[] body = response.body != null ? this.objectMapper.writeValueAsBytes(response.body) : new byte[0];
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(response.status, body.length != 0 ? body.length : -1);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+		catch (Throwable ex) {
+			logger.error("Failed to handle " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), ex);
+			exchange.sendResponseHeaders(500, -1);
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private void simulateLatency() throws InterruptedException {
+		int jitter = this.settings.getLatencyJitter();
+		long millis = this.settings.getLatency() + (jitter > 0 ? ThreadLocalRandom.current().nextInt(jitter) : 0);
+		if (millis > 0) {
+			Thread.sleep(millis);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] content = in.readAllBytes();
+			return content.length != 0 ? this.objectMapper.readValue(content, Map.class) : null;
+		}
+	}
+
+	static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<>();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int index = pair.indexOf('=');
+				String name = index != -1 ? pair.substring(0, index) : pair;
+				String value = index != -1 ? pair.substring(index + 1) : "";
+				params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * Handle a request.
+	 * @param method the HTTP method
+	 * @param path the request path
+	 * @param query the raw query, or {@code null}
+	 * @param body the JSON request body, or {@code null}
+	 */
+	protected abstract Response handle(String method, String path, String query, Map<String, Object> body);
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+
+	static class Response {
+
+		final String route;
+
+		final int status;
+
+		final Object body;
+
+		final Map<String, String> headers = new TreeMap<>();
+
+
+		Response(String route, int status, Object body) {
+			this.route = route;
+			this.status = status;
+			this.body = body;
+		}
+
+		Response header(String name, String value) {
+			this.headers.put(name, value);
+			return this;
+		}
+	}
+
+}
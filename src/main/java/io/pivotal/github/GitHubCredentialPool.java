@@ -0,0 +1,173 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.pivotal.util.RateLimitHelper;
+import io.pivotal.util.RateLimitHelper.RequestClass;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Pool of GitHub access tokens to spread read requests across, each with its
+ * own {@link RateLimitHelper}, and its own primary rate limit budget tracked
+ * from the {@code X-RateLimit-*} response headers. Reads go to the token
+ * with the most remaining budget, while content modifying requests are
+ * pinned to the first token, so that all content is attributed to one user.
+ * <p>Tokens of the same user share rate limits, so the pool only helps with
+ * tokens of different users.
+ */
+public class GitHubCredentialPool {
+
+	private final List<Credential> credentials;
+
+	private int nextIndex;
+
+
+	/**
+	 * Create a pool with a single token, or none, to use the rate limiter with
+	 * the "Authorization" header of each request as is.
+	 */
+	public GitHubCredentialPool(String token, RateLimitHelper rateLimitHelper) {
+		this.credentials = Collections.singletonList(new Credential(token, rateLimitHelper));
+	}
+
+	/**
+	 * Create a pool with the given tokens, and a {@link RateLimitHelper} with
+	 * default settings for each.
+	 * @param writeToken the token for content modifying requests, also used
+	 * for reads, or {@code null} to use the "Authorization" header of each
+	 * request as is, in which case the read tokens are ignored
+	 * @param readTokens additional tokens for read requests
+	 */
+	public GitHubCredentialPool(String writeToken, List<String> readTokens) {
+		List<Credential> credentials = new ArrayList<>();
+		credentials.add(new Credential(writeToken, new RateLimitHelper()));
+		for (String token : (writeToken != null ? readTokens : Collections.<String>emptyList())) {
+			token = token.trim();
+			if (!token.isEmpty() && !token.equals(writeToken)) {
+				credentials.add(new Credential(token, new RateLimitHelper()));
+			}
+		}
+		this.credentials = Collections.unmodifiableList(credentials);
+	}
+
+
+	public int size() {
+		return this.credentials.size();
+	}
+
+	List<Credential> getCredentials() {
+		return this.credentials;
+	}
+
+	/**
+	 * Select the credential for a request of the given class: the write
+	 * token for content modifying requests, and for reads, the token with
+	 * the most remaining budget, rotating among tokens with equal budget.
+	 */
+	public synchronized Credential select(RequestClass requestClass) {
+		if (requestClass != RequestClass.READ || this.credentials.size() == 1) {
+			return this.credentials.get(0);
+		}
+		long now = System.currentTimeMillis();
+		int size = this.credentials.size();
+		Credential selected = null;
+		for (int i = 0; i < size; i++) {
+			Credential credential = this.credentials.get((this.nextIndex + i) % size);
+			if (selected == null || credential.getRemaining(now) > selected.getRemaining(now)) {
+				selected = credential;
+			}
+		}
+		this.nextIndex = (this.nextIndex + 1) % size;
+		selected.reserve(now);
+		return selected;
+	}
+
+	/**
+	 * Update the rate limits of the credential a response was received for.
+	 */
+	public synchronized void updateFromHeaders(Credential credential, HttpHeaders headers) {
+		credential.getRateLimitHelper().updateFromHeaders(headers);
+		credential.updateRemaining(headers);
+	}
+
+
+	/**
+	 * An access token with its rate limit state.
+	 */
+	public static class Credential {
+
+		/** Remaining budget before the first response, or after a reset. */
+		private static final long UNKNOWN = Long.MAX_VALUE;
+
+
+		private final String token;
+
+		private final RateLimitHelper rateLimitHelper;
+
+		private long remaining = UNKNOWN;
+
+		private long resetMillis;
+
+
+		Credential(String token, RateLimitHelper rateLimitHelper) {
+			this.token = token;
+			this.rateLimitHelper = rateLimitHelper;
+		}
+
+
+		/**
+		 * Return the token, or {@code null} to use the "Authorization" header
+		 * of the request.
+		 */
+		public String getToken() {
+			return this.token;
+		}
+
+		public RateLimitHelper getRateLimitHelper() {
+			return this.rateLimitHelper;
+		}
+
+		long getRemaining(long now) {
+			return (now < this.resetMillis ? this.remaining : UNKNOWN);
+		}
+
+		/**
+		 * Count a request against the budget until the response updates it.
+		 */
+		void reserve(long now) {
+			if (now < this.resetMillis && this.remaining > 0) {
+				this.remaining--;
+			}
+		}
+
+		void updateRemaining(HttpHeaders headers) {
+			String remaining = headers.getFirst("X-RateLimit-Remaining");
+			String reset = headers.getFirst("X-RateLimit-Reset");
+			String resource = headers.getFirst("X-RateLimit-Resource");
+			if (remaining == null || reset == null || (resource != null && !resource.equals("core"))) {
+				return;
+			}
+			this.remaining = Long.parseLong(remaining);
+			this.resetMillis = 1000 * Long.parseLong(reset);
+		}
+	}
+
+}
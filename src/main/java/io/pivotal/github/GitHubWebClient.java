@@ -0,0 +1,235 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.time.Duration;
+
+import io.netty.channel.ChannelOption;
+import io.pivotal.util.RateLimitHelper;
+import io.pivotal.util.RateLimitHelper.RequestClass;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * Non-blocking client for the GitHub API.
+ *
+ * <p>Each request first reserves a permit from the {@link RateLimitHelper},
+ * and waits for it without blocking a thread. Rate limited requests, i.e.
+ * responses with "Retry-After", or with no remaining primary budget, are
+ * retried once the limit allows. Server errors and connection failures are
+ * retried with exponential backoff, but only for idempotent methods. All
+ * retries are bounded, after which the last error is passed on.
+ *
+ * <p>Given a {@link GitHubCredentialPool} with several tokens, read requests
+ * are sent with the token that has the most remaining budget, replacing the
+ * token in the "Authorization" header of the request, while content
+ * modifying requests are sent with the write token of the pool.
+ *
+ * <p>Connections are pooled, and HTTP/2 is negotiated for "https" API URLs.
+ */
+public class GitHubWebClient {
+
+	private static final Logger logger = LogManager.getLogger(GitHubWebClient.class);
+
+	public static final int DEFAULT_MAX_CONNECTIONS = 50;
+
+	public static final int DEFAULT_MAX_RETRIES = 5;
+
+	private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+
+	private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+
+	private final WebClient webClient;
+
+	private final GitHubCredentialPool credentials;
+
+	private final int maxRetries;
+
+
+	/**
+	 * Create an instance with default settings.
+	 * @param apiUrl the base URL of the API, used to decide whether to use HTTP/2
+	 * @param rateLimitHelper the rate limiter to obtain permits from, and to
+	 * update with the rate limits from responses
+	 */
+	public GitHubWebClient(String apiUrl, RateLimitHelper rateLimitHelper) {
+		this(apiUrl, new GitHubCredentialPool(null, rateLimitHelper));
+	}
+
+	/**
+	 * Create an instance with default settings.
+	 * @param apiUrl the base URL of the API, used to decide whether to use HTTP/2
+	 * @param credentials the tokens to send requests with, each with its own
+	 * rate limiter
+	 */
+	public GitHubWebClient(String apiUrl, GitHubCredentialPool credentials) {
+		this(apiUrl, credentials, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_RETRIES);
+	}
+
+	public GitHubWebClient(String apiUrl, RateLimitHelper rateLimitHelper, int maxConnections, int maxRetries) {
+		this(apiUrl, new GitHubCredentialPool(null, rateLimitHelper), maxConnections, maxRetries);
+	}
+
+	public GitHubWebClient(String apiUrl, GitHubCredentialPool credentials, int maxConnections, int maxRetries) {
+		ConnectionProvider connectionProvider = ConnectionProvider.builder("github")
+				.maxConnections(maxConnections)
+				.pendingAcquireMaxCount(-1)
+				.maxIdleTime(Duration.ofSeconds(30))
+				.build();
+		HttpClient httpClient = HttpClient.create(connectionProvider)
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000);
+		if (apiUrl.startsWith("https:")) {
+			// Negotiated through ALPN, falling back on HTTP/1.1
+			httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+		}
+		this.webClient = WebClient.builder()
+				.clientConnector(new ReactorClientHttpConnector(httpClient))
+				.codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+				.build();
+		this.credentials = credentials;
+		this.maxRetries = maxRetries;
+	}
+
+
+	public <T> Mono<ResponseEntity<T>> exchange(RequestEntity<?> request, Class<T> responseType) {
+		return exchange(request, ParameterizedTypeReference.forType(responseType));
+	}
+
+	/**
+	 * Perform the request, once permitted by the rate limits, and retrying
+	 * as described in the class-level documentation.
+	 * @return the response entity, or an error, e.g. a
+	 * {@link WebClientResponseException} for a 4xx or 5xx response
+	 */
+	public <T> Mono<ResponseEntity<T>> exchange(
+			RequestEntity<?> request, ParameterizedTypeReference<T> responseType) {
+
+		RequestClass requestClass = RequestClass.forRequest(request.getMethod(), request.getUrl());
+		return Mono.defer(() -> {
+					GitHubCredentialPool.Credential credential = this.credentials.select(requestClass);
+					Duration wait = credential.getRateLimitHelper().reservePermitToCall(requestClass);
+					Mono<ResponseEntity<T>> result = send(request, credential, responseType);
+					return (wait.isZero() ? result : Mono.delay(wait).then(result));
+				})
+				.retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+					Duration delay = getRetryDelay(request.getMethod(), signal.failure(), signal.totalRetries());
+					if (delay == null || signal.totalRetries() >= this.maxRetries) {
+						return Mono.error(signal.failure());
+					}
+					logger.debug("Retrying {} {} in {} ms after \"{}\"", request.getMethod(),
+							request.getUrl().getPath(), delay.toMillis(), signal.failure().getMessage());
+					return Mono.delay(delay);
+				})));
+	}
+
+	private <T> Mono<ResponseEntity<T>> send(RequestEntity<?> request,
+			GitHubCredentialPool.Credential credential, ParameterizedTypeReference<T> responseType) {
+
+		WebClient.RequestBodySpec spec = this.webClient.method(request.getMethod())
+				.uri(request.getUrl())
+				.headers(headers -> {
+					headers.addAll(request.getHeaders());
+					if (credential.getToken() != null) {
+						headers.set(HttpHeaders.AUTHORIZATION,
+								getAuthorizationScheme(request.getHeaders()) + " " + credential.getToken());
+					}
+				});
+		WebClient.RequestHeadersSpec<?> headersSpec =
+				(request.getBody() != null ? spec.bodyValue(request.getBody()) : spec);
+		return headersSpec.exchangeToMono(response -> {
+			HttpHeaders headers = response.headers().asHttpHeaders();
+			logger.debug("{} {} {} {X-RateLimit-Remaining:{}}", request.getMethod(), request.getUrl().getPath(),
+					response.rawStatusCode(), headers.getFirst("X-RateLimit-Remaining"));
+			this.credentials.updateFromHeaders(credential, headers);
+			if (response.statusCode().isError()) {
+				return response.createException().flatMap(Mono::error);
+			}
+			return response.toEntity(responseType);
+		});
+	}
+
+	/**
+	 * Return the scheme of the "Authorization" header of the request, e.g.
+	 * "bearer" for GraphQL queries, or else "token".
+	 */
+	private static String getAuthorizationScheme(HttpHeaders headers) {
+		String authorization = headers.getFirst(HttpHeaders.AUTHORIZATION);
+		int index = (authorization != null ? authorization.indexOf(' ') : -1);
+		return (index > 0 ? authorization.substring(0, index) : "token");
+	}
+
+	/**
+	 * Return how long to wait before retrying after the given failure, or
+	 * {@code null} if the request should not be retried.
+	 */
+	static Duration getRetryDelay(HttpMethod method, Throwable failure, long retries) {
+		if (failure instanceof WebClientResponseException) {
+			WebClientResponseException ex = (WebClientResponseException) failure;
+			HttpHeaders headers = ex.getHeaders();
+			String retryAfter = headers.getFirst("Retry-After");
+			if (retryAfter != null) {
+				try {
+					return Duration.ofSeconds(Long.parseLong(retryAfter));
+				}
+				catch (NumberFormatException formatEx) {
+					return getBackoff(retries);
+				}
+			}
+			if ("0".equals(headers.getFirst("X-RateLimit-Remaining"))) {
+				String reset = headers.getFirst("X-RateLimit-Reset");
+				if (reset != null) {
+					long millis = (1000 * Long.parseLong(reset)) - System.currentTimeMillis();
+					return Duration.ofMillis(Math.max(0, millis));
+				}
+			}
+			if (ex.getRawStatusCode() >= 500 && isIdempotent(method)) {
+				return getBackoff(retries);
+			}
+			return null;
+		}
+		if (failure instanceof WebClientRequestException && isIdempotent(method)) {
+			return getBackoff(retries);
+		}
+		return null;
+	}
+
+	private static boolean isIdempotent(HttpMethod method) {
+		return (method == HttpMethod.GET || method == HttpMethod.HEAD ||
+				method == HttpMethod.PUT || method == HttpMethod.DELETE);
+	}
+
+	private static Duration getBackoff(long retries) {
+		Duration backoff = MIN_BACKOFF.multipliedBy(1L << Math.min(retries, 16));
+		return (backoff.compareTo(MAX_BACKOFF) < 0 ? backoff : MAX_BACKOFF);
+	}
+
+}
@@ -15,6 +15,9 @@
  */
 package io.pivotal.github;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -29,6 +32,12 @@ import lombok.Data;
 @ConfigurationProperties(prefix="github")
 @Data
 public class GithubConfig {
+	/**
+	 * The base URL of the GitHub REST API. Only needs to be changed to run
+	 * against a stand-in server, e.g. for benchmarks.
+	 */
+	String apiUrl = "https://api.github.com";
+
 	/**
 	 * The github repository slug to migrate to. For example, to migrate the
 	 * issues to https://github.com/spring-projects/spring-security/issues use
@@ -45,6 +54,13 @@ public class GithubConfig {
 	 */
 	String accessToken;
 
+	/**
+	 * Additional tokens, ideally of different users, to spread read requests
+	 * across, each with its own rate limits. Content is always created and
+	 * updated with {@link #getAccessToken()}.
+	 */
+	List<String> readAccessTokens = new ArrayList<>();
+
 	/**
 	 * <p>
 	 * If set, the migration script will attempt to delete / create a GitHub
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Decides the page size and the number of concurrent requests to use when
+ * loading data from Jira.
+ * <p>With {@link JiraConfig.FetchStrategy#FIXED} the configured values are
+ * used as they are. With {@link JiraConfig.FetchStrategy#ADAPTIVE} they are
+ * upper bounds, and the actual values are tuned AIMD style: increased
+ * additively while requests complete within the target latency, and
+ * decreased multiplicatively on slow responses or errors. The page size is
+ * further limited so that the expected payload per page, based on the
+ * average size of issues seen so far, stays under the target page size.
+ */
+class FetchController {
+
+	private static final Logger logger = LogManager.getLogger(FetchController.class);
+
+	private static final int MIN_PAGE_SIZE = 50;
+
+
+	private final boolean adaptive;
+
+	private final int maxConcurrency;
+
+	private final long targetLatencyMillis;
+
+	private final long targetPageBytes;
+
+	private final Queue<PermitRequest> waiting = new ArrayDeque<>();
+
+	private int maxPageSize;
+
+	private int minPageSize;
+
+	private int pageSize;
+
+	private int concurrencyLimit;
+
+	private int inFlight;
+
+	private double averageItemBytes;
+
+
+	FetchController(JiraConfig config, int maxPageSize, int maxConcurrency) {
+		this.adaptive = config.getFetchStrategy() == JiraConfig.FetchStrategy.ADAPTIVE;
+		this.maxConcurrency = maxConcurrency;
+		this.targetLatencyMillis = config.getFetchTargetLatency().toMillis();
+		this.targetPageBytes = config.getFetchTargetPageSize().toBytes();
+		this.maxPageSize = maxPageSize;
+		this.minPageSize = Math.min(MIN_PAGE_SIZE, maxPageSize);
+		this.pageSize = (adaptive ? Math.max(this.minPageSize, maxPageSize / 4) : maxPageSize);
+		this.concurrencyLimit = (adaptive ? Math.max(1, maxConcurrency / 2) : maxConcurrency);
+	}
+
+
+	public boolean isAdaptive() {
+		return this.adaptive;
+	}
+
+	/**
+	 * The upper bound for concurrent requests, e.g. to use as the concurrency
+	 * of a {@code flatMap}, while {@link #acquire()} enforces the current limit.
+	 */
+	public int getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+
+	public synchronized int getMinPageSize() {
+		return this.minPageSize;
+	}
+
+	public synchronized int getConcurrencyLimit() {
+		return this.concurrencyLimit;
+	}
+
+	/**
+	 * Return the page size to use for the next page request.
+	 */
+	public synchronized int nextPageSize() {
+		return this.pageSize;
+	}
+
+	/**
+	 * Lower the max page size, e.g. when Jira returns fewer results than
+	 * requested because the server caps {@code maxResults}.
+	 */
+	public synchronized void capPageSize(int cap) {
+		if (cap < this.maxPageSize) {
+			logger.info("Jira capped the page size at {}", cap);
+			this.maxPageSize = cap;
+			this.minPageSize = Math.min(this.minPageSize, cap);
+			this.pageSize = Math.min(this.pageSize, cap);
+		}
+	}
+
+	/**
+	 * Wait until the number of requests in flight is under the current limit.
+	 * Each successful acquire must be followed by a {@link #release()}. A
+	 * cancel before the permit is delivered gives up the permit, if granted.
+	 */
+	public Mono<Void> acquire() {
+		return Mono.create(sink -> {
+			PermitRequest request = new PermitRequest(sink);
+			sink.onCancel(() -> {
+				boolean granted;
+				synchronized (this) {
+					request.cancelled = true;
+					this.waiting.remove(request);
+					granted = request.granted;
+				}
+				if (granted) {
+					release();
+				}
+			});
+			boolean granted;
+			synchronized (this) {
+				if (request.cancelled) {
+					return;
+				}
+				granted = (this.inFlight < this.concurrencyLimit);
+				if (granted) {
+					this.inFlight++;
+					request.granted = true;
+				}
+				else {
+					this.waiting.add(request);
+				}
+			}
+			if (granted) {
+				sink.success();
+			}
+		});
+	}
+
+	public void release() {
+		List<PermitRequest> granted;
+		synchronized (this) {
+			this.inFlight--;
+			granted = grantWaiting();
+		}
+		granted.forEach(PermitRequest::success);
+	}
+
+	/**
+	 * Record a successful request.
+	 * @param latencyMillis how long the request took
+	 * @param byteCount the size of the response payload, or 0 if not known
+	 * @param itemCount the number of items in the response, or 0 if not applicable
+	 */
+	public void onSuccess(long latencyMillis, long byteCount, int itemCount) {
+		if (!this.adaptive) {
+			return;
+		}
+		List<PermitRequest> granted;
+		synchronized (this) {
+			if (byteCount > 0 && itemCount > 0) {
+				double itemBytes = (double) byteCount / itemCount;
+				this.averageItemBytes = (this.averageItemBytes > 0 ?
+						0.8 * this.averageItemBytes + 0.2 * itemBytes : itemBytes);
+			}
+			if (latencyMillis > this.targetLatencyMillis) {
+				this.pageSize = Math.max(this.minPageSize, this.pageSize / 2);
+				this.concurrencyLimit = Math.max(1, this.concurrencyLimit - 1);
+			}
+			else {
+				int step = Math.max(1, this.maxPageSize / 10);
+				this.pageSize = Math.min(maxPageSizeForPayload(), this.pageSize + step);
+				this.concurrencyLimit = Math.min(this.maxConcurrency, this.concurrencyLimit + 1);
+			}
+			logger.debug("{}ms, {} bytes, {} items: page size {}, concurrency {}",
+					latencyMillis, byteCount, itemCount, this.pageSize, this.concurrencyLimit);
+			granted = grantWaiting();
+		}
+		granted.forEach(PermitRequest::success);
+	}
+
+	/**
+	 * Record a failed request, e.g. a timeout or a server error.
+	 */
+	public synchronized void onError() {
+		if (!this.adaptive) {
+			return;
+		}
+		this.pageSize = Math.max(this.minPageSize, this.pageSize / 2);
+		this.concurrencyLimit = Math.max(1, this.concurrencyLimit / 2);
+		logger.debug("Error: page size {}, concurrency {}", this.pageSize, this.concurrencyLimit);
+	}
+
+	private int maxPageSizeForPayload() {
+		if (this.averageItemBytes <= 0) {
+			return this.maxPageSize;
+		}
+		int size = (int) (this.targetPageBytes / this.averageItemBytes);
+		return Math.max(this.minPageSize, Math.min(this.maxPageSize, size));
+	}
+
+	private List<PermitRequest> grantWaiting() {
+		List<PermitRequest> result = new ArrayList<>();
+		while (this.inFlight < this.concurrencyLimit && !this.waiting.isEmpty()) {
+			PermitRequest request = this.waiting.poll();
+			this.inFlight++;
+			request.granted = true;
+			result.add(request);
+		}
+		return result;
+	}
+
+
+	/**
+	 * A caller of {@link #acquire()}, with its state guarded by the controller lock.
+	 */
+	private static class PermitRequest {
+
+		private final MonoSink<Void> sink;
+
+		private boolean granted;
+
+		private boolean cancelled;
+
+
+		PermitRequest(MonoSink<Void> sink) {
+			this.sink = sink;
+		}
+
+
+		void success() {
+			this.sink.success();
+		}
+	}
+
+}
@@ -15,23 +15,34 @@
  */
 package io.pivotal.jira;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.Duration;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.datatype.joda.JodaModule;
 import io.pivotal.util.ProgressTracker;
 import lombok.Data;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -44,14 +55,6 @@ import org.springframework.web.reactive.function.client.WebClientResponseExcepti
 @Component
 public class JiraClient {
 
-	/**
-	 * The max number of issues expected in the Jira project. It should be some reasonably high number,
-	 * so all issues will be fetched, in multiples of 1000. This is necessary because we don't
-	 * politely fetch one page at a time, but rather get 5 at a time concurrently. This number gives
-	 * a hint where to stop so we avoid running into a bunch of 400 errors before realizing to stop.
-	 */
-	public static final int MAX_ISSUE_COUNT_HINT = 20000;
-
 	private static final ParameterizedTypeReference<Map<String, Object>> MAP_TYPE =
 			new ParameterizedTypeReference<Map<String, Object>>() {};
 
@@ -62,18 +65,26 @@ public class JiraClient {
 
 	WebClient webClient;
 
+	JiraSearchPageDecoder pageDecoder;
+
 
 	@Autowired
 	public JiraClient(JiraConfig jiraConfig) {
 		this.jiraConfig = jiraConfig;
 		WebClient.Builder builder = WebClient.builder()
 				.baseUrl(jiraConfig.getBaseUrl() + "/rest/api/2")
-				.codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(-1));
+				// Search pages are streamed, see JiraSearchPageDecoder, so this
+				// limit applies only to smaller responses such as the project
+				.codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024));
 		if (jiraConfig.getUser() != null) {
 			builder = builder.defaultHeaders(headers ->
 					headers.setBasicAuth(jiraConfig.getUser(), jiraConfig.getPassword()));
 		}
 		this.webClient = builder.build();
+		this.pageDecoder = new JiraSearchPageDecoder(
+				Jackson2ObjectMapperBuilder.json()
+						.modulesToInstall(new JodaModule(), new JiraInterningModule())
+						.build());
 	}
 
 
@@ -98,7 +109,7 @@ public class JiraClient {
 	}
 
 	private Mono<List<JiraIssue>> getAndCollectIssues(String jql) {
-		return getIssues(jql).collectList()
+		return (jiraConfig.getSnapshotDirectory() != null ? getIssuesWithSnapshot(jql) : getIssues(jql).collectList())
 				.doOnNext(issues -> {
 					logger.info("Found {} issues", issues.size());
 
@@ -111,64 +122,309 @@ public class JiraClient {
 				});
 	}
 
-	private Flux<JiraIssue> getIssues(String jql) {
-		int pageSize = 1000;
-		logger.info("Loading issues (1000 per page) for jql=\"{}\"", jql);
-		int concurrency = 5; // we could go higher but each brings large amount of data to convert in parallel
-		return Flux.range(0, MAX_ISSUE_COUNT_HINT / 1000)
-				.flatMap(page -> {
-					int startAt = page * pageSize;
-					System.out.print((page + 1) + " ");
-					return webClient.get()
-							.uri("/search?maxResults=1000&startAt={0}&jql={jql}&fields=" + JiraIssue.FIELD_NAMES, startAt, jql)
-							.retrieve()
-							.bodyToMono(JiraSearchResult.class)
-							.onErrorResume(ex -> {
-								logger.error("page " + page + ": " + ex.getMessage(), ex);
-								return Mono.empty();
+	/**
+	 * Load issues from a local snapshot, if there is one, plus the issues
+	 * updated in Jira since the last sync, and save the result as the new
+	 * snapshot. If the resulting count doesn't match the total in Jira, e.g.
+	 * due to deleted or moved issues, fall back on loading all issues.
+	 */
+	private Mono<List<JiraIssue>> getIssuesWithSnapshot(String jql) {
+		JiraIssueSnapshot snapshot = new JiraIssueSnapshot(new File(jiraConfig.getSnapshotDirectory()), jql);
+		DateTime syncTime = DateTime.now();
+		Mono<List<JiraIssue>> allIssues = getIssues(jql).collectList();
+		Mono<List<JiraIssue>> issues = !snapshot.exists() ? allIssues : Mono.fromCallable(snapshot::read)
+				.zipWith(Mono.fromCallable(snapshot::getDeltaJql))
+				.onErrorResume(IOException.class, ex -> {
+					logger.error("Failed to read snapshot: " + ex.getMessage());
+					return Mono.empty();
+				})
+				.flatMap(snapshotAndDeltaJql -> {
+					List<JiraIssue> snapshotIssues = snapshotAndDeltaJql.getT1();
+					String deltaJql = snapshotAndDeltaJql.getT2();
+					logger.info("Loaded {} issues from snapshot, checking for updates with jql=\"{}\"",
+							snapshotIssues.size(), deltaJql);
+					return getIssues(deltaJql).collectList()
+							.zipWith(getTotal(jql))
+							.flatMap(updatesAndTotal -> {
+								List<JiraIssue> updates = updatesAndTotal.getT1();
+								long total = updatesAndTotal.getT2();
+								List<JiraIssue> merged = JiraIssueSnapshot.merge(snapshotIssues, updates);
+								logger.info("{} issues updated since the last sync", updates.size());
+								if (merged.size() != total) {
+									logger.info("Snapshot has {} issues but Jira has {}, loading all issues",
+											merged.size(), total);
+									return allIssues;
+								}
+								return Mono.just(merged);
 							});
+				})
+				.switchIfEmpty(allIssues);
+		return issues.doOnNext(result -> {
+			try {
+				snapshot.write(result, syncTime);
+			}
+			catch (IOException ex) {
+				logger.error("Failed to write snapshot: " + ex.getMessage(), ex);
+			}
+		});
+	}
 
-				}, concurrency)
-				.sort(Comparator.comparingLong(JiraSearchResult::getStartAt))
+	private Mono<Long> getTotal(String jql) {
+		return webClient.get()
+				.uri("/search?maxResults=0&jql={jql}&fields=key", jql)
+				.retrieve()
+				.bodyToMono(JiraSearchResult.class)
+				.map(JiraSearchResult::getTotal);
+	}
+
+	/**
+	 * Fetch the first page to find out the total number of issues, and then
+	 * fetch exactly the remaining pages, several at a time. Issues are emitted
+	 * in {@code startAt} order as they are decoded, without waiting for the
+	 * rest of their page, so downstream processing can start while later pages
+	 * are still loading, and only a few issues per page are held in memory.
+	 * <p>Page sizes and concurrency are decided by a {@link FetchController}
+	 * according to the configured {@link JiraConfig#getFetchStrategy() strategy}.
+	 */
+	private Flux<JiraIssue> getIssues(String jql) {
+		FetchController controller = new FetchController(
+				jiraConfig, jiraConfig.getSearchPageSize(), jiraConfig.getSearchConcurrency());
+		int firstPageSize = controller.nextPageSize();
+		logger.info("Loading issues for jql=\"{}\" ({} fetch strategy, {} per page, {} pages concurrently)",
+				jql, jiraConfig.getFetchStrategy(), firstPageSize, controller.getConcurrencyLimit());
+		return getSearchPages(jql, 0, firstPageSize, controller)
+				.switchOnFirst((first, firstPage) -> {
+					if (!first.hasValue()) {
+						return firstPage;
+					}
+					long total = first.get().getTotal();
+					logger.info("Found {} issues in total", total);
+					Flux<JiraSearchResult> remainingPages = getPageRequests(firstPageSize, total, controller)
+							.flatMapSequential(request -> controller.acquire()
+									.thenMany(Flux.defer(() ->
+											getSearchPages(jql, request.getT1(), request.getT2(), controller)
+													.doFinally(signal -> controller.release()))),
+									controller.getMaxConcurrency());
+					return Flux.mergeSequential(firstPage, remainingPages);
+				})
 				.concatMapIterable(JiraSearchResult::getIssues)
-				.doOnComplete(() -> System.out.println("complete"));
+				.doOnComplete(() -> logger.info("Loading issues complete"));
+	}
+
+	/**
+	 * Generate the startAt and page size of each page after the first, lazily,
+	 * so each page uses the page size current at the time it is requested.
+	 */
+	private Flux<Tuple2<Long, Integer>> getPageRequests(long firstStartAt, long total, FetchController controller) {
+		return Flux.generate(() -> firstStartAt, (startAt, sink) -> {
+			if (startAt >= total) {
+				sink.complete();
+				return startAt;
+			}
+			int pageSize = controller.nextPageSize();
+			sink.next(Tuples.of(startAt, pageSize));
+			return startAt + pageSize;
+		});
+	}
+
+	private Flux<JiraSearchResult> getSearchPages(String jql, long startAt, int pageSize, FetchController controller) {
+		return getSearchPages(jql, startAt, pageSize, controller, 3);
+	}
+
+	/**
+	 * Load the given range of issues. Normally that's a single page, but if
+	 * Jira returns fewer issues than requested, the rest of the range is loaded
+	 * with additional pages. Since issues are emitted as they are decoded, a
+	 * failed page is resumed after the last issue received, either retried as
+	 * is, or for the adaptive strategy, split in two smaller pages.
+	 */
+	private Flux<JiraSearchResult> getSearchPages(
+			String jql, long startAt, int pageSize, FetchController controller, int retries) {
+
+		return Flux.defer(() -> {
+			AtomicReference<JiraSearchResult> metadata = new AtomicReference<>();
+			AtomicInteger received = new AtomicInteger();
+			AtomicBoolean failed = new AtomicBoolean();
+			return getSearchPage(jql, startAt, pageSize, controller)
+					.doOnNext(result -> {
+						if (metadata.compareAndSet(null, result)) {
+							long maxResults = result.getMaxResults();
+							if (maxResults > 0 && maxResults < pageSize) {
+								controller.capPageSize((int) maxResults);
+							}
+						}
+						received.addAndGet(result.getIssues().size());
+					})
+					.onErrorResume(ex -> {
+						failed.set(true);
+						long nextStartAt = startAt + received.get();
+						int remaining = pageSize - received.get();
+						if (remaining <= 0) {
+							return Flux.empty();
+						}
+						if (controller.isAdaptive() && remaining > controller.getMinPageSize()) {
+							int half = remaining / 2;
+							logger.warn("Failed to load {} issues at startAt={} ({}), retrying as 2 smaller pages",
+									remaining, nextStartAt, ex.getMessage());
+							return Flux.concat(
+									getSearchPages(jql, nextStartAt, half, controller, retries),
+									getSearchPages(jql, nextStartAt + half, remaining - half, controller, retries));
+						}
+						if (retries > 0) {
+							return getSearchPages(jql, nextStartAt, remaining, controller, retries - 1);
+						}
+						return Flux.error(ex);
+					})
+					.concatWith(Flux.defer(() -> {
+						int count = received.get();
+						if (!failed.get() && metadata.get() != null &&
+								count > 0 && count < pageSize && startAt + count < metadata.get().getTotal()) {
+							return getSearchPages(jql, startAt + count, pageSize - count, controller, retries);
+						}
+						return Flux.empty();
+					}));
+		});
+	}
+
+	private String getSearchFields() {
+		return JiraIssue.FIELD_NAMES + (jiraConfig.isVotesInSearch() ? ",votes" : "");
+	}
+
+	/**
+	 * Request a single page and decode it incrementally.
+	 * @see JiraSearchPageDecoder
+	 */
+	private Flux<JiraSearchResult> getSearchPage(String jql, long startAt, int pageSize, FetchController controller) {
+		return Flux.defer(() -> {
+			long startTime = System.currentTimeMillis();
+			AtomicLong byteCount = new AtomicLong();
+			AtomicInteger issueCount = new AtomicInteger();
+			return webClient.get()
+					.uri("/search?maxResults={maxResults}&startAt={startAt}&jql={jql}&fields=" + getSearchFields(),
+							pageSize, startAt, jql)
+					.exchangeToFlux(response -> {
+						if (response.statusCode().isError()) {
+							return response.createException().flatMapMany(ex -> Flux.<JiraSearchResult>error(ex));
+						}
+						return this.pageDecoder.decode(response.bodyToFlux(DataBuffer.class)
+								.doOnNext(buffer -> byteCount.addAndGet(buffer.readableByteCount())));
+					})
+					.doOnNext(result -> issueCount.addAndGet(result.getIssues().size()))
+					.doOnComplete(() -> {
+						long latency = System.currentTimeMillis() - startTime;
+						logger.debug("Loaded {} issues at startAt={} in {}ms ({} bytes)",
+								issueCount.get(), startAt, latency, byteCount.get());
+						controller.onSuccess(latency, byteCount.get(), issueCount.get());
+					})
+					.doOnError(ex -> {
+						logger.error("Failed to load page at startAt=" + startAt + ": " + ex.getMessage());
+						controller.onError();
+					});
+		});
 	}
 
 	/**
+	 * Load votes and commits for the given issues. Votes are requested only
+	 * for issues whose votes were not loaded with the search, and commits only
+	 * for issues not in the commit cache, nor skipped based on their resolution.
 	 * @param issues the issues to populate
+	 * @see JiraConfig#isVotesInSearch()
+	 * @see JiraConfig#getCommitCacheFile()
+	 * @see JiraConfig#getCommitLookupResolutions()
 	 */
 	private Mono<Void> populateVotesAndCommits(List<JiraIssue> issues) {
-		logger.info("Loading votes and commits for {} issues (2 requests per issue/iteration)", issues.size());
+		JiraCommitCache commitCache = openCommitCache();
+		long votesRequests = issues.stream().filter(issue -> issue.getFields().getVotes() == null).count();
+		long commitsRequests = issues.stream().filter(issue -> getKnownCommits(issue, commitCache) == null).count();
+		logger.info("Loading votes and commits for {} issues ({} requests for votes, {} for commits)",
+				issues.size(), votesRequests, commitsRequests);
 		ProgressTracker tracker = new ProgressTracker(issues.size(), 50, 1000, logger.isDebugEnabled());
-		int concurrency = 8; // 16 concurrent requests (2 per flatMap)s
+		FetchController controller = new FetchController(jiraConfig, 1, jiraConfig.getIssueRequestConcurrency());
 		return Flux.fromIterable(issues)
 				.flatMap(issue -> {
-					Mono<Map<String, Object>> votesResult = webClient.get()
-							.uri("/issue/{id}/votes", issue.getId())
-							.retrieve()
-							.bodyToMono(MAP_TYPE)
-							.timeout(Duration.ofSeconds(10))
-							.retry(3);
-					Mono<Map<String, Object>> commitsResult = webClient.get()
-							.uri(builder -> builder
-									.replacePath("/rest/dev-status/1.0/issue/detail")
-									.query("issueId={id}&applicationType=github&dataType=repository")
-									.build(issue.getId()))
-							.retrieve()
-							.bodyToMono(MAP_TYPE)
-							.timeout(Duration.ofSeconds(10))
-							.retry(3);
-					return Mono.zip(Mono.just(issue), votesResult, commitsResult);
-				}, concurrency)
+					JiraVotes votes = issue.getFields().getVotes();
+					List<String> commits = getKnownCommits(issue, commitCache);
+					if (votes != null && commits != null) {
+						return Mono.just(Tuples.of(issue, votes.getVotes(), commits));
+					}
+					return controller.acquire().then(Mono.defer(() -> {
+						long startTime = System.currentTimeMillis();
+						Mono<Integer> votesResult = (votes != null ? Mono.just(votes.getVotes()) : webClient.get()
+								.uri("/issue/{id}/votes", issue.getId())
+								.retrieve()
+								.bodyToMono(MAP_TYPE)
+								.timeout(Duration.ofSeconds(10))
+								.doOnError(ex -> controller.onError())
+								.retry(3)
+								.map(map -> (int) map.get("votes")));
+						Mono<List<String>> commitsResult = (commits != null ? Mono.just(commits) : webClient.get()
+								.uri(builder -> builder
+										.replacePath("/rest/dev-status/1.0/issue/detail")
+										.query("issueId={id}&applicationType=github&dataType=repository")
+										.build(issue.getId()))
+								.retrieve()
+								.bodyToMono(MAP_TYPE)
+								.timeout(Duration.ofSeconds(10))
+								.doOnError(ex -> controller.onError())
+								.retry(3)
+								.map(this::extractCommits)
+								.doOnNext(urls -> {
+									if (commitCache != null) {
+										commitCache.put(issue, urls);
+									}
+								}));
+						return Mono.zip(Mono.just(issue), votesResult, commitsResult)
+								.doOnNext(tuple -> controller.onSuccess(System.currentTimeMillis() - startTime, 0, 0))
+								.doFinally(signal -> controller.release());
+					}));
+				}, controller.getMaxConcurrency())
 				.doOnNext(tuple -> {
-					tuple.getT1().setVotes((int) tuple.getT2().get("votes"));
-					tuple.getT1().setCommitUrls(extractCommits(tuple.getT3()));
+					tuple.getT1().setVotes(tuple.getT2());
+					tuple.getT1().setCommitUrls(tuple.getT3());
 					tracker.updateForIteration();
 				})
 				.doOnComplete(tracker::stopProgress)
+				.doFinally(signal -> {
+					if (commitCache != null) {
+						try {
+							commitCache.close();
+						}
+						catch (IOException ex) {
+							logger.error("Failed to close commit cache: " + ex.getMessage());
+						}
+					}
+				})
 				.then();
 	}
 
+	private JiraCommitCache openCommitCache() {
+		if (jiraConfig.getCommitCacheFile() == null) {
+			return null;
+		}
+		try {
+			return new JiraCommitCache(new File(jiraConfig.getCommitCacheFile()));
+		}
+		catch (IOException ex) {
+			logger.error("Failed to open commit cache, looking up all commits: " + ex.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Return the commits for the issue if they are known without a request,
+	 * i.e. cached or skipped, or otherwise {@code null}.
+	 */
+	private List<String> getKnownCommits(JiraIssue issue, JiraCommitCache commitCache) {
+		List<String> resolutions = jiraConfig.getCommitLookupResolutions();
+		if (!resolutions.isEmpty()) {
+			JiraResolution resolution = issue.getFields().getResolution();
+			if (resolution == null || !resolutions.contains(resolution.getName())) {
+				return Collections.emptyList();
+			}
+		}
+		return (commitCache != null ? commitCache.get(issue) : null);
+	}
+
 	@SuppressWarnings("unchecked")
 	private List<String> extractCommits(Map<String, Object> result) {
 		List<Map<String, Object>> details = (List<Map<String, Object>>) result.get("detail");
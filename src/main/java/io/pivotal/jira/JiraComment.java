@@ -16,6 +16,7 @@
 package io.pivotal.jira;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
@@ -30,8 +31,18 @@ import lombok.Data;
 public class JiraComment {
 
     JiraUser author;
-    DateTime created;
+    /** Epoch millis, or 0 if not set */
+    long created;
 	String body;
 	JiraCommentVisibility visibility;
 
+
+	public DateTime getCreated() {
+		return (this.created != 0 ? new DateTime(this.created, DateTimeZone.UTC) : null);
+	}
+
+	public void setCreated(DateTime created) {
+		this.created = (created != null ? created.getMillis() : 0);
+	}
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Local cache of the commits per issue from the Jira dev-status API, stored
+ * as one line per lookup with the issue id, the time the issue was last
+ * updated, and the commit URLs. An entry is used only while the issue
+ * remains unchanged, and later lines take precedence over earlier ones.
+ * <p>Each lookup is appended and flushed immediately, so entries survive
+ * a migration that is interrupted and restarted.
+ *
+ * @see JiraConfig#getCommitCacheFile()
+ */
+class JiraCommitCache implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger(JiraCommitCache.class);
+
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final BufferedWriter writer;
+
+
+	JiraCommitCache(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory != null) {
+			Files.createDirectories(directory.toPath());
+		}
+		if (file.exists()) {
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] parts = line.split("\t");
+					if (parts.length >= 2) {
+						List<String> urls = (parts.length > 2 ?
+								Arrays.asList(parts).subList(2, parts.length) : Collections.emptyList());
+						this.entries.put(parts[0], new Entry(Long.parseLong(parts[1]), urls));
+					}
+				}
+			}
+			logger.info("Loaded commits for {} issues from {}", this.entries.size(), file);
+		}
+		this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+
+	/**
+	 * Return the cached commits for the issue, or {@code null} if the issue
+	 * isn't in the cache, or has been updated since it was cached.
+	 */
+	public List<String> get(JiraIssue issue) {
+		Entry entry = this.entries.get(issue.getId());
+		return (entry != null && entry.updated == getUpdated(issue) ? entry.commitUrls : null);
+	}
+
+	public void put(JiraIssue issue, List<String> commitUrls) {
+		long updated = getUpdated(issue);
+		this.entries.put(issue.getId(), new Entry(updated, commitUrls));
+		StringBuilder line = new StringBuilder(issue.getId()).append('\t').append(updated);
+		commitUrls.forEach(url -> line.append('\t').append(url));
+		synchronized (this.writer) {
+			try {
+				this.writer.write(line.toString());
+				this.writer.newLine();
+				this.writer.flush();
+			}
+			catch (IOException ex) {
+				logger.error("Failed to cache commits for " + issue.getKey() + ": " + ex.getMessage());
+			}
+		}
+	}
+
+	private static long getUpdated(JiraIssue issue) {
+		return issue.getFields().updated;
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (this.writer) {
+			this.writer.close();
+		}
+	}
+
+
+	private static class Entry {
+
+		private final long updated;
+
+		private final List<String> commitUrls;
+
+		Entry(long updated, List<String> commitUrls) {
+			this.updated = updated;
+			this.commitUrls = commitUrls;
+		}
+	}
+
+}
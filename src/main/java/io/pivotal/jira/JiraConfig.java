@@ -15,8 +15,13 @@
  */
 package io.pivotal.jira;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import lombok.Data;
 
@@ -54,7 +59,79 @@ public class JiraConfig {
 	 */
 	String password;
 
+	/**
+	 * (Optional) directory for local snapshots of loaded issues. If set, issues
+	 * are loaded from the snapshot, plus a query for issues updated in Jira since
+	 * the last sync. Delete the snapshot files to force loading all issues.
+	 */
+	String snapshotDirectory;
+
+	/**
+	 * How to choose the page size and concurrency of requests to Jira. The
+	 * default "fixed" strategy uses {@link #searchPageSize},
+	 * {@link #searchConcurrency} and {@link #issueRequestConcurrency} as is,
+	 * while "adaptive" treats them as upper bounds and tunes the actual values
+	 * based on observed latency, payload size, and errors.
+	 */
+	FetchStrategy fetchStrategy = FetchStrategy.FIXED;
+
+	/**
+	 * The number of issues per search page.
+	 */
+	int searchPageSize = 1000;
+
+	/**
+	 * The number of search pages to load concurrently. Each brings a large
+	 * amount of data to convert in parallel.
+	 */
+	int searchConcurrency = 5;
+
+	/**
+	 * The number of issues to load votes and commits for concurrently (up to 2 requests each).
+	 */
+	int issueRequestConcurrency = 8;
+
+	/**
+	 * Whether to load votes with the search pages via the "votes" field rather
+	 * than with a separate request per issue, which leaves only the commits
+	 * lookup to be done per issue.
+	 */
+	boolean votesInSearch;
+
+	/**
+	 * (Optional) file for a local cache of the commits per issue from the
+	 * dev-status API. If set, a restarted migration looks up commits only
+	 * for issues not in the cache, or updated since they were cached.
+	 */
+	String commitCacheFile;
+
+	/**
+	 * (Optional) resolutions of issues to look up commits for, e.g. "Fixed".
+	 * If set, the lookup is skipped for unresolved issues and issues with any
+	 * other resolution, on the assumption they have no commits. By default,
+	 * commits are looked up for all issues.
+	 */
+	List<String> commitLookupResolutions = Collections.emptyList();
+
+	/**
+	 * For the "adaptive" strategy, responses slower than this reduce the page size and concurrency.
+	 */
+	Duration fetchTargetLatency = Duration.ofSeconds(20);
+
+	/**
+	 * For the "adaptive" strategy, the payload size per search page to aim for.
+	 */
+	DataSize fetchTargetPageSize = DataSize.ofMegabytes(8);
+
 	public String getMigrateJql() {
 		return migrateJql == null ? "project = " + getProjectId() + " ORDER BY key ASC" : migrateJql;
 	}
+
+
+	public enum FetchStrategy {
+
+		FIXED,
+
+		ADAPTIVE
+	}
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Jackson module that replaces equal instances of the objects repeated across
+ * Jira issues, such as users, versions, statuses, and components, with a single
+ * canonical instance as they are deserialized. For a large project, that's
+ * thousands of distinct values shared by hundreds of thousands of references.
+ * <p>Canonical instances are shared by all issues read through the same
+ * {@code ObjectMapper}, and must not be modified after they are loaded.
+ * Repeated strings that are not part of such objects, e.g. labels, can use
+ * {@link InternedStringDeserializer} instead.
+ */
+public class JiraInterningModule extends SimpleModule {
+
+	private static final Set<Class<?>> INTERNED_TYPES = new HashSet<>(Arrays.asList(
+			JiraUser.class, JiraStatus.class, JiraResolution.class, JiraIssueType.class,
+			JiraComponent.class, JiraVersion.class, JiraFixVersion.class, JiraSecurity.class,
+			JiraCommentVisibility.class));
+
+
+	private final Map<Object, Object> canonicalValues = new ConcurrentHashMap<>();
+
+
+	public JiraInterningModule() {
+		super(JiraInterningModule.class.getSimpleName());
+		setDeserializerModifier(new BeanDeserializerModifier() {
+
+			@Override
+			public JsonDeserializer<?> modifyDeserializer(
+					DeserializationConfig config, BeanDescription description, JsonDeserializer<?> deserializer) {
+
+				return (INTERNED_TYPES.contains(description.getBeanClass()) ?
+						new InterningDeserializer(deserializer) : deserializer);
+			}
+		});
+	}
+
+
+	/**
+	 * Return the number of distinct values held.
+	 */
+	public int getCanonicalValueCount() {
+		return this.canonicalValues.size();
+	}
+
+	Object intern(Object value) {
+		if (value == null) {
+			return null;
+		}
+		Object existing = this.canonicalValues.putIfAbsent(value, value);
+		return (existing != null ? existing : value);
+	}
+
+
+	private class InterningDeserializer extends DelegatingDeserializer {
+
+		InterningDeserializer(JsonDeserializer<?> delegate) {
+			super(delegate);
+		}
+
+		@Override
+		protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+			return new InterningDeserializer(newDelegatee);
+		}
+
+		@Override
+		public Object deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			return intern(super.deserialize(parser, context));
+		}
+	}
+
+
+	/**
+	 * Deserializer for repeated strings, e.g. labels, that returns the
+	 * {@link String#intern() interned} value.
+	 */
+	public static class InternedStringDeserializer extends StdScalarDeserializer<String> {
+
+		public InternedStringDeserializer() {
+			super(String.class);
+		}
+
+		@Override
+		public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			String value = StringDeserializer.instance.deserialize(parser, context);
+			return (value != null ? value.intern() : null);
+		}
+	}
+
+}
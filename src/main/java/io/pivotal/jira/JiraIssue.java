@@ -23,8 +23,10 @@ import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Data;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -121,8 +123,10 @@ public class JiraIssue {
 		String summary;
 		String description;
 		JiraIssueType issuetype;
-		DateTime created;
-		DateTime updated;
+		/** Epoch millis, or 0 if not set */
+		long created;
+		/** Epoch millis, or 0 if not set */
+		long updated;
 		JiraCommentPage comment;
 		List<JiraComponent> components;
 		List<JiraVersion> versions;
@@ -134,15 +138,42 @@ public class JiraIssue {
 		List<IssueLink> issuelinks;
 		JiraIssue parent;
 		List<JiraIssue> subtasks;
+		@JsonDeserialize(contentUsing = JiraInterningModule.InternedStringDeserializer.class)
 		List<String> labels;
 		List<JiraAttachment> attachment;
 		JiraWatcher watches;
+		/** Present only if requested, see {@link JiraConfig#isVotesInSearch()} */
+		JiraVotes votes;
 		@JsonProperty("customfield_10120")
 		String referenceUrl;
 		@JsonProperty("customfield_10684")
 		String pullRequestUrl;
 		JiraSecurity security;
 
+		public DateTime getCreated() {
+			return toDateTime(this.created);
+		}
+
+		public void setCreated(DateTime created) {
+			this.created = toMillis(created);
+		}
+
+		public DateTime getUpdated() {
+			return toDateTime(this.updated);
+		}
+
+		public void setUpdated(DateTime updated) {
+			this.updated = toMillis(updated);
+		}
+
+		private static DateTime toDateTime(long millis) {
+			return (millis != 0 ? new DateTime(millis, DateTimeZone.UTC) : null);
+		}
+
+		private static long toMillis(DateTime dateTime) {
+			return (dateTime != null ? dateTime.getMillis() : 0);
+		}
+
 		public boolean isPublic() {
 			return security == null || security.getName().equals("Public");
 		}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import org.joda.time.DateTime;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Local snapshot of the issues for a JQL query, stored as gzipped
+ * newline-delimited JSON, along with the time of the last sync.
+ * <p>After a snapshot is saved, subsequent runs need to load from Jira only
+ * the issues updated since the last sync via {@link #getDeltaJql()},
+ * and {@link #merge(List, List) merge} them into the snapshot.
+ *
+ * @see JiraConfig#getSnapshotDirectory()
+ */
+class JiraIssueSnapshot {
+
+	private static final Pattern orderByPattern = Pattern.compile("(?i)\\bORDER\\s+BY\\b");
+
+	private static final String LAST_SYNC_PROPERTY = "lastSync";
+
+	private static final String JQL_PROPERTY = "jql";
+
+	private static final String COUNT_PROPERTY = "count";
+
+
+	private final String jql;
+
+	private final File issuesFile;
+
+	private final File metadataFile;
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.modulesToInstall(new JodaModule(), new JiraInterningModule())
+			.visibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+			.visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+			.build();
+
+
+	JiraIssueSnapshot(File directory, String jql) {
+		this.jql = jql;
+		String name = "issues-" + DigestUtils.md5DigestAsHex(jql.getBytes(StandardCharsets.UTF_8));
+		this.issuesFile = new File(directory, name + ".ndjson.gz");
+		this.metadataFile = new File(directory, name + ".properties");
+	}
+
+
+	public boolean exists() {
+		return this.issuesFile.exists() && this.metadataFile.exists();
+	}
+
+	public DateTime getLastSync() throws IOException {
+		Properties metadata = new Properties();
+		try (InputStream in = new FileInputStream(this.metadataFile)) {
+			metadata.load(in);
+		}
+		return DateTime.parse(metadata.getProperty(LAST_SYNC_PROPERTY));
+	}
+
+	public List<JiraIssue> read() throws IOException {
+		List<JiraIssue> issues = new ArrayList<>();
+		try (InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(this.issuesFile)));
+			 MappingIterator<JiraIssue> iterator = this.objectMapper.readerFor(JiraIssue.class).readValues(in)) {
+			while (iterator.hasNext()) {
+				issues.add(iterator.next());
+			}
+		}
+		return issues;
+	}
+
+	/**
+	 * Replace the snapshot with the given issues.
+	 * @param issues the issues to save
+	 * @param syncTime when the issues were loaded; this should be taken
+	 * before the queries to Jira, so that concurrent updates aren't missed
+	 */
+	public void write(List<JiraIssue> issues, DateTime syncTime) throws IOException {
+		File directory = this.issuesFile.getParentFile();
+		if (directory != null) {
+			Files.createDirectories(directory.toPath());
+		}
+		File tempFile = new File(directory, this.issuesFile.getName() + ".tmp");
+		try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			 SequenceWriter writer = this.objectMapper.writerFor(JiraIssue.class)
+					 .withRootValueSeparator("\n").writeValues(out)) {
+			writer.writeAll(issues);
+		}
+		Files.move(tempFile.toPath(), this.issuesFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		Properties metadata = new Properties();
+		metadata.setProperty(LAST_SYNC_PROPERTY, syncTime.toString());
+		metadata.setProperty(JQL_PROPERTY, this.jql);
+		metadata.setProperty(COUNT_PROPERTY, String.valueOf(issues.size()));
+		try (OutputStream out = new FileOutputStream(this.metadataFile)) {
+			metadata.store(out, "Jira issues snapshot");
+		}
+	}
+
+	/**
+	 * Return a variant of the snapshot JQL restricted to issues updated since the last sync.
+	 * Jira interprets the date in the time zone of the user, so the query
+	 * overlaps with the previous sync by a day, which is harmless since
+	 * {@link #merge(List, List) merging} replaces issues by key.
+	 */
+	public String getDeltaJql() throws IOException {
+		String since = getLastSync().minusDays(1).toString("yyyy/MM/dd HH:mm");
+		String condition = "updated >= \"" + since + "\"";
+		Matcher matcher = orderByPattern.matcher(this.jql);
+		int index = (matcher.find() ? matcher.start() : this.jql.length());
+		String where = this.jql.substring(0, index).trim();
+		String orderBy = this.jql.substring(index).trim();
+		return (where.isEmpty() ? condition : "(" + where + ") AND " + condition) +
+				(orderBy.isEmpty() ? "" : " " + orderBy);
+	}
+
+	/**
+	 * Merge updated issues into the snapshot issues, replacing existing issues
+	 * in place, and appending new ones at the end.
+	 */
+	public static List<JiraIssue> merge(List<JiraIssue> issues, List<JiraIssue> updatedIssues) {
+		Map<String, JiraIssue> result = new LinkedHashMap<>(issues.size() + updatedIssues.size());
+		issues.forEach(issue -> result.put(issue.getKey(), issue));
+		updatedIssues.forEach(issue -> result.put(issue.getKey(), issue));
+		return new ArrayList<>(result.values());
+	}
+
+}
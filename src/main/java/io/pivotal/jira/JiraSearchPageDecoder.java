@@ -0,0 +1,202 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import reactor.core.publisher.Flux;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+/**
+ * Decodes the body of a Jira search request incrementally, emitting each issue
+ * as soon as its closing brace arrives rather than aggregating the whole page,
+ * so memory use is bounded by a few issues per page in flight.
+ * <p>The first {@link JiraSearchResult} emitted carries the page metadata and
+ * no issues, and it is followed by one result per issue, each with the same
+ * metadata and a single issue. Jira writes "startAt", "maxResults", and
+ * "total" ahead of "issues", so the metadata is complete by the time the
+ * first issue is emitted.
+ */
+class JiraSearchPageDecoder {
+
+	private final ObjectMapper objectMapper;
+
+
+	JiraSearchPageDecoder(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+
+	public Flux<JiraSearchResult> decode(Flux<DataBuffer> body) {
+		return Flux.defer(() -> {
+			PageParser parser;
+			try {
+				parser = new PageParser();
+			}
+			catch (IOException ex) {
+				return Flux.error(ex);
+			}
+			return body
+					.concatMapIterable(buffer -> {
+						try {
+							byte[] bytes = new byte[buffer.readableByteCount()];
+							buffer.read(bytes);
+							return parser.feed(bytes);
+						}
+						finally {
+							DataBufferUtils.release(buffer);
+						}
+					})
+					.concatWith(Flux.defer(() -> Flux.fromIterable(parser.endOfInput())))
+					.doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+		});
+	}
+
+
+	/**
+	 * Non-blocking parser state for a single page.
+	 */
+	private class PageParser {
+
+		private final JsonParser parser;
+
+		private final ByteArrayFeeder feeder;
+
+		private final JiraSearchResult metadata = new JiraSearchResult();
+
+		private boolean metadataEmitted;
+
+		private int depth;
+
+		private String fieldName;
+
+		private boolean inIssues;
+
+		private TokenBuffer issueTokens;
+
+
+		PageParser() throws IOException {
+			this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+			this.feeder = (ByteArrayFeeder) this.parser.getNonBlockingInputFeeder();
+		}
+
+
+		List<JiraSearchResult> feed(byte[] bytes) {
+			try {
+				this.feeder.feedInput(bytes, 0, bytes.length);
+				return parse();
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException("Failed to decode Jira search result", ex);
+			}
+		}
+
+		List<JiraSearchResult> endOfInput() {
+			try {
+				this.feeder.endOfInput();
+				List<JiraSearchResult> results = parse();
+				if (this.depth != 0) {
+					throw new JsonParseException(this.parser, "Incomplete Jira search result");
+				}
+				if (!this.metadataEmitted) {
+					results.add(result(Collections.emptyList()));
+				}
+				return results;
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException("Failed to decode Jira search result", ex);
+			}
+		}
+
+		private List<JiraSearchResult> parse() throws IOException {
+			List<JiraSearchResult> results = new ArrayList<>();
+			JsonToken token;
+			while ((token = this.parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+				if (this.issueTokens != null) {
+					this.issueTokens.copyCurrentEvent(this.parser);
+					this.depth += depthChange(token);
+					if (this.depth == 2) {
+						JiraIssue issue = objectMapper.readValue(this.issueTokens.asParser(objectMapper), JiraIssue.class);
+						this.issueTokens = null;
+						results.add(result(Collections.singletonList(issue)));
+					}
+					continue;
+				}
+				if (this.inIssues && this.depth == 2) {
+					if (token == JsonToken.START_OBJECT) {
+						this.issueTokens = new TokenBuffer(this.parser);
+						this.issueTokens.copyCurrentEvent(this.parser);
+					}
+					else if (token == JsonToken.END_ARRAY) {
+						this.inIssues = false;
+					}
+				}
+				else if (this.depth == 1) {
+					if (token == JsonToken.FIELD_NAME) {
+						this.fieldName = this.parser.getCurrentName();
+					}
+					else if (token.isNumeric()) {
+						setMetadata(this.fieldName, this.parser.getLongValue());
+					}
+					else if (token == JsonToken.START_ARRAY && "issues".equals(this.fieldName)) {
+						this.inIssues = true;
+						this.metadataEmitted = true;
+						results.add(result(Collections.emptyList()));
+					}
+				}
+				this.depth += depthChange(token);
+			}
+			return results;
+		}
+
+		private void setMetadata(String name, long value) {
+			if ("startAt".equals(name)) {
+				this.metadata.setStartAt(value);
+			}
+			else if ("maxResults".equals(name)) {
+				this.metadata.setMaxResults(value);
+			}
+			else if ("total".equals(name)) {
+				this.metadata.setTotal(value);
+			}
+		}
+
+		private JiraSearchResult result(List<JiraIssue> issues) {
+			JiraSearchResult result = new JiraSearchResult();
+			result.setStartAt(this.metadata.getStartAt());
+			result.setMaxResults(this.metadata.getMaxResults());
+			result.setTotal(this.metadata.getTotal());
+			result.setIssues(issues);
+			return result;
+		}
+
+		private int depthChange(JsonToken token) {
+			return (token.isStructStart() ? 1 : (token.isStructEnd() ? -1 : 0));
+		}
+	}
+
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.pivotal.migration.MigrationClient.ImportedIssue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Checks the status of submitted imports on a background thread, so that
+ * submitting imports never has to stop and wait for earlier imports to
+ * complete. Pending imports are checked again with jittered exponential
+ * backoff, so imports submitted together don't keep getting checked together,
+ * and resolved imports are recorded in the {@link MigrationContext}.
+ *
+ * <p>Imports that are due are checked in batches, with the checks in a batch
+ * running concurrently if the {@link AsyncStatusCheck} is non-blocking.
+ * Given a {@link BulkStatusCheck}, the statuses of all imports in a batch are
+ * first listed with a single request, and only imports that are no longer
+ * pending, or are missing from the list, are checked one by one, e.g. to get
+ * the number of the imported issue.
+ *
+ * <p>A failure to check the status of an import says nothing about the
+ * import itself, so it is checked again later. After repeated failures, the
+ * import is given up on for this run, but it is not recorded as failed, so
+ * that the next run checks it again rather than submitting it a second time.
+ *
+ * @see MigrationClient#createIssues
+ */
+class ImportStatusPoller implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger(ImportStatusPoller.class);
+
+	static final Duration DEFAULT_INITIAL_DELAY = Duration.ofSeconds(1);
+
+	static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(30);
+
+	static final int DEFAULT_CONCURRENCY = 50;
+
+	private static final int BATCH_SIZE = 50;
+
+	/** Number of failures in a row to check the status of an import, before giving up for this run. */
+	static final int MAX_CHECK_FAILURES = 10;
+
+	/** Margin for the difference between the local clock and GitHub's, when listing imports. */
+	private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+
+
+	private final AsyncStatusCheck statusCheck;
+
+	private final BulkStatusCheck bulkStatusCheck;
+
+	private final int concurrency;
+
+	private final MigrationContext context;
+
+	private final Duration initialDelay;
+
+	private final Duration maxDelay;
+
+	private final DelayQueue<PendingImport> pendingImports = new DelayQueue<>();
+
+	private final Thread thread;
+
+	private int unresolvedCount;
+
+
+	ImportStatusPoller(AsyncStatusCheck statusCheck, MigrationContext context,
+			Duration initialDelay, Duration maxDelay, int concurrency) {
+
+		this(statusCheck, null, context, initialDelay, maxDelay, concurrency);
+	}
+
+	ImportStatusPoller(AsyncStatusCheck statusCheck, BulkStatusCheck bulkStatusCheck, MigrationContext context,
+			Duration initialDelay, Duration maxDelay, int concurrency) {
+
+		this.statusCheck = statusCheck;
+		this.bulkStatusCheck = bulkStatusCheck;
+		this.concurrency = concurrency;
+		this.context = context;
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.thread = new Thread(this::pollImports, "import-status-poller");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+
+	/**
+	 * Add a submitted import to check the status of.
+	 */
+	public void submit(ImportedIssue importedIssue) {
+		synchronized (this) {
+			this.unresolvedCount++;
+		}
+		this.pendingImports.add(new PendingImport(importedIssue, Instant.now(), this.initialDelay));
+	}
+
+	public synchronized int getUnresolvedCount() {
+		return this.unresolvedCount;
+	}
+
+	/**
+	 * Block until all submitted imports are resolved, successfully or not.
+	 */
+	public synchronized void awaitCompletion() {
+		while (this.unresolvedCount > 0) {
+			try {
+				wait();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for import results", ex);
+			}
+		}
+	}
+
+	private synchronized void resolved() {
+		this.unresolvedCount--;
+		notifyAll();
+	}
+
+	private void pollImports() {
+		while (!Thread.currentThread().isInterrupted()) {
+			List<PendingImport> batch = new ArrayList<>(BATCH_SIZE);
+			try {
+				batch.add(this.pendingImports.take());
+			}
+			catch (InterruptedException ex) {
+				return;
+			}
+			addToBatch(batch);
+			Set<PendingImport> handled = ConcurrentHashMap.newKeySet();
+			try {
+				Map<String, String> statuses = getStatuses(batch);
+				Flux.fromIterable(batch)
+						.flatMap(pendingImport -> {
+							if ("pending".equals(statuses.get(pendingImport.getImportUrl()))) {
+								handled.add(pendingImport);
+								this.pendingImports.add(pendingImport.backOff(this.maxDelay));
+								return Mono.empty();
+							}
+							return checkStatus(pendingImport.getImportedIssue())
+									.doOnNext(resolved -> {
+										handled.add(pendingImport);
+										if (resolved) {
+											recordResult(pendingImport.getImportedIssue(), this.context::addImportResult);
+										}
+										else {
+											this.pendingImports.add(pendingImport.backOff(this.maxDelay));
+										}
+									})
+									.onErrorResume(ex -> {
+										if (Exceptions.unwrap(ex) instanceof InterruptedException) {
+											return Mono.error(ex);
+										}
+										handled.add(pendingImport);
+										checkFailed(pendingImport, ex);
+										return Mono.empty();
+									});
+						}, this.concurrency)
+						.blockLast();
+			}
+			catch (RuntimeException ex) {
+				if (Exceptions.unwrap(ex) instanceof InterruptedException) {
+					return;
+				}
+				// Keep polling, or else awaitCompletion() would never return
+				logger.error("Failed to check import statuses, checking again later", ex);
+				batch.stream()
+						.filter(pendingImport -> !handled.contains(pendingImport))
+						.forEach(pendingImport -> this.pendingImports.add(pendingImport.backOff(this.maxDelay)));
+			}
+		}
+	}
+
+	/**
+	 * Check the import again later, or give up on it after too many failures
+	 * in a row, recording it as unchecked rather than failed.
+	 */
+	private void checkFailed(PendingImport pendingImport, Throwable ex) {
+		PendingImport next = pendingImport.checkFailed(this.maxDelay);
+		String importUrl = pendingImport.getImportUrl();
+		if (next.getCheckFailures() < MAX_CHECK_FAILURES) {
+			logger.warn("Failed to check import status for {}, checking again in {}ms: {}",
+					importUrl, next.getDelay(TimeUnit.MILLISECONDS), ex.getMessage());
+			this.pendingImports.add(next);
+			return;
+		}
+		logger.error("Failed to check import status for " + importUrl + " " + MAX_CHECK_FAILURES +
+				" times, leaving it to be checked in the next run", ex);
+		recordResult(pendingImport.getImportedIssue(),
+				importedIssue -> this.context.addUncheckedImport(importedIssue, ex.getMessage()));
+	}
+
+	/**
+	 * Record the result of a resolved import in the {@link MigrationContext}.
+	 * If that fails, e.g. writing to the state store, the import is still
+	 * treated as resolved, since checking it again would not help, and the
+	 * result is logged instead.
+	 */
+	private void recordResult(ImportedIssue importedIssue, Consumer<ImportedIssue> recorder) {
+		try {
+			recorder.accept(importedIssue);
+		}
+		catch (RuntimeException ex) {
+			String key = (importedIssue.getJiraIssue() != null ? importedIssue.getJiraIssue().getKey() : "backports");
+			logger.error("Failed to record import result for " + key + " (issue number: " +
+					importedIssue.getIssueNumber() + ", failure: " + importedIssue.getFailure() + ")", ex);
+		}
+		finally {
+			resolved();
+		}
+	}
+
+	/**
+	 * Add imports that are due to the batch. For bulk listing, also add those
+	 * due within the initial delay, as one more in the listing costs nothing.
+	 */
+	private void addToBatch(List<PendingImport> batch) {
+		long window = (this.bulkStatusCheck != null ? this.initialDelay.toNanos() : 0);
+		while (batch.size() < BATCH_SIZE) {
+			PendingImport pendingImport = this.pendingImports.peek();
+			if (pendingImport == null || pendingImport.getDelay(TimeUnit.NANOSECONDS) > window) {
+				return;
+			}
+			this.pendingImports.remove(pendingImport);
+			batch.add(pendingImport);
+		}
+	}
+
+	/**
+	 * List the statuses of the imports in the batch, if there is more than one
+	 * and a {@link BulkStatusCheck} to do it with. On failure, return no
+	 * statuses, so that each import is checked separately.
+	 */
+	private Map<String, String> getStatuses(List<PendingImport> batch) {
+		if (this.bulkStatusCheck == null || batch.size() < 2) {
+			return Collections.emptyMap();
+		}
+		Instant since = batch.stream().map(PendingImport::getSubmittedAt).min(Instant::compareTo).get();
+		try {
+			Map<String, String> statuses = this.bulkStatusCheck.getStatuses(since.minus(CLOCK_SKEW)).block();
+			return (statuses != null ? statuses : Collections.emptyMap());
+		}
+		catch (RuntimeException ex) {
+			if (Exceptions.unwrap(ex) instanceof InterruptedException) {
+				throw ex;
+			}
+			logger.warn("Failed to list import statuses, checking {} imports separately: {}",
+					batch.size(), ex.getMessage());
+			return Collections.emptyMap();
+		}
+	}
+
+	private Mono<Boolean> checkStatus(ImportedIssue importedIssue) {
+		return Mono.defer(() -> this.statusCheck.isResolved(importedIssue)).defaultIfEmpty(false);
+	}
+
+	@Override
+	public void close() {
+		this.thread.interrupt();
+	}
+
+
+	/**
+	 * Check the status of an import once, without blocking.
+	 */
+	@FunctionalInterface
+	interface AsyncStatusCheck {
+
+		/**
+		 * Return a {@code Mono} with {@code true} if the import is resolved,
+		 * i.e. either the issue number or the failure is set, or {@code false}
+		 * if it's still pending.
+		 */
+		Mono<Boolean> isResolved(ImportedIssue importedIssue);
+	}
+
+
+	/**
+	 * List the status of imports in bulk, without blocking.
+	 */
+	@FunctionalInterface
+	interface BulkStatusCheck {
+
+		/**
+		 * Return a {@code Mono} with the status, e.g. "pending", "imported",
+		 * or "failed", of each import created since the given time, keyed by
+		 * the URL of the import.
+		 */
+		Mono<Map<String, String>> getStatuses(Instant since);
+	}
+
+
+	private static class PendingImport implements Delayed {
+
+		private final ImportedIssue importedIssue;
+
+		private final Instant submittedAt;
+
+		private final Duration delay;
+
+		private final int checkFailures;
+
+		private final long dueTime;
+
+
+		PendingImport(ImportedIssue importedIssue, Instant submittedAt, Duration delay) {
+			this(importedIssue, submittedAt, delay, 0, delay.toNanos());
+		}
+
+		private PendingImport(ImportedIssue importedIssue, Instant submittedAt, Duration delay,
+				int checkFailures, long delayNanos) {
+
+			this.importedIssue = importedIssue;
+			this.submittedAt = submittedAt;
+			this.delay = delay;
+			this.checkFailures = checkFailures;
+			this.dueTime = System.nanoTime() + delayNanos;
+		}
+
+
+		ImportedIssue getImportedIssue() {
+			return this.importedIssue;
+		}
+
+		Instant getSubmittedAt() {
+			return this.submittedAt;
+		}
+
+		/**
+		 * The number of failures in a row to check the status.
+		 */
+		int getCheckFailures() {
+			return this.checkFailures;
+		}
+
+		String getImportUrl() {
+			return (this.importedIssue.getImportResponse() != null ?
+					this.importedIssue.getImportResponse().getUrl() : null);
+		}
+
+		/**
+		 * Return the same import due again after double the delay, up to the
+		 * max delay, with a random reduction of up to half of it.
+		 */
+		PendingImport backOff(Duration maxDelay) {
+			return backOff(maxDelay, 0);
+		}
+
+		/**
+		 * Variant of {@link #backOff(Duration)} after a failure to check the status.
+		 */
+		PendingImport checkFailed(Duration maxDelay) {
+			return backOff(maxDelay, this.checkFailures + 1);
+		}
+
+		private PendingImport backOff(Duration maxDelay, int checkFailures) {
+			Duration nextDelay = this.delay.multipliedBy(2);
+			nextDelay = (nextDelay.compareTo(maxDelay) < 0 ? nextDelay : maxDelay);
+			long halfNanos = nextDelay.toNanos() / 2;
+			long jitteredNanos = halfNanos + ThreadLocalRandom.current().nextLong(halfNanos + 1);
+			return new PendingImport(this.importedIssue, this.submittedAt, nextDelay, checkFailures, jitteredNanos);
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.dueTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
+
+}
@@ -16,31 +16,29 @@
 package io.pivotal.migration;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
-import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Properties;
 import java.util.stream.Collectors;
 
 import io.pivotal.jira.JiraClient;
 import io.pivotal.jira.JiraConfig;
 import io.pivotal.jira.JiraIssue;
 import io.pivotal.jira.JiraProject;
+import io.pivotal.util.IssueMappingIndex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.util.Assert;
-import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.util.StopWatch;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 /**
  * @author Rob Winch
@@ -60,55 +58,82 @@ public class MigrationApp implements CommandLineRunner {
 	@Autowired
 	JiraConfig jiraConfig;
 
+	@Value("${migration.mappings-file:github-issue-mappings.properties}")
+	File mappingsFile;
+
+	@Value("${migration.failures-file:github-migration-failures.txt}")
+	File failuresFile;
+
+	@Value("${migration.state-file:github-migration-state.log}")
+	File stateFile;
+
+	/** Time spent in each phase of the last run. */
+	private final StopWatch stopWatch = new StopWatch("Migration");
+
 
 	public static void main(String args[]) {
-		SpringApplication.run(MigrationApp.class);
+		System.exit(SpringApplication.exit(SpringApplication.run(MigrationApp.class)));
 	}
 
 
+	public StopWatch getStopWatch() {
+		return this.stopWatch;
+	}
+
 	@Override
 	public void run(String... strings) throws Exception {
 
-		File mappingsFile = new File("github-issue-mappings.properties");
-		File failuresFile = new File("github-migration-failures.txt");
-
 		try (FileWriter mappingsWriter = new FileWriter(mappingsFile, true);
-			 FileWriter failuresWriter = new FileWriter(failuresFile, true)) {
+			 FileWriter failuresWriter = new FileWriter(failuresFile, true);
+			 MigrationStateStore stateStore = new MigrationStateStore(stateFile)) {
 
 			String startTime = DateTimeFormat.forStyle("ML").print(DateTime.now());
 			failuresWriter.write("==================================\n" + startTime + "\n");
 			failuresWriter.flush();
 
-			Map<String, Integer> issueMappings = loadIssueMappings(mappingsFile);
-			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter);
+			IssueMappingIndex issueMappings = IssueMappingIndex.load(mappingsFile);
+			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter, stateStore);
 			context.setPreviouslyImportedIssueMappings(issueMappings);
 
+			this.stopWatch.start("Prepare repository");
 			try {
 				// Delete if github.delete-create-repository-slug=true AND 0 commits
 				if (github.deleteRepository()) {
-					Assert.isTrue(issueMappings.isEmpty(),
-							"Repository was deleted but github-issue-mappings.properties has content." +
-									"Please delete the file, or save the content elsewhere and then delete.");
+					Assert.isTrue(issueMappings.isEmpty() && stateStore.isEmpty(),
+							"Repository was deleted but " + mappingsFile + " or " + stateFile + " has content." +
+									"Please delete the files, or save the content elsewhere and then delete.");
 				}
 			}
-			catch (HttpClientErrorException ex) {
-				if (ex.getStatusCode().value() != HttpStatus.NOT_FOUND.value()) {
+			catch (WebClientResponseException ex) {
+				if (ex.getRawStatusCode() != HttpStatus.NOT_FOUND.value()) {
 					throw ex;
 				}
 			}
 
 			github.createRepository();
-
-			if (issueMappings.isEmpty()) {
-				JiraProject project = jira.findProject(jiraConfig.getProjectId());
-				github.createMilestones(project.getVersions());
-				github.createLabels();
+			this.stopWatch.stop();
+
+			// Before the state store, a restart was recognized by existing issue mappings
+			boolean restartWithoutState = !issueMappings.isEmpty() && stateStore.isEmpty();
+			if (!restartWithoutState) {
+				this.stopWatch.start("Create milestones and labels");
+				if (!context.isCompletedPhase(MigrationContext.MILESTONES_PHASE)) {
+					JiraProject project = jira.findProject(jiraConfig.getProjectId());
+					github.createMilestones(project.getVersions());
+					context.addCompletedPhase(MigrationContext.MILESTONES_PHASE);
+				}
+				if (!context.isCompletedPhase(MigrationContext.LABELS_PHASE)) {
+					github.createLabels();
+					context.addCompletedPhase(MigrationContext.LABELS_PHASE);
+				}
+				this.stopWatch.stop();
 			}
 			else {
 				// If there are issue mappings, we'll assume it's "restart after failure" and
 				// that milestones and labels have already been created,
 			}
 
+			this.stopWatch.start("Load Jira issues");
 			String migrateJql = jiraConfig.getMigrateJql();
 			List<JiraIssue> issues = jira.findIssuesVotesAndCommits(migrateJql, context::filterRemaingIssuesToImport);
 
@@ -120,20 +145,15 @@ public class MigrationApp implements CommandLineRunner {
 					.filter(issue -> issue.getFields().isPublic())
 					.collect(Collectors.toList());
 
+			this.stopWatch.stop();
+
+			this.stopWatch.start("Create GitHub issues");
 			github.createIssues(publicIssues, restrictedIssueKeys, context);
+			this.stopWatch.stop();
 
 			logger.info("Migration run completed: " + context);
+			logger.info(this.stopWatch.prettyPrint());
 		}
-
-		System.exit(0);
-	}
-
-	private static Map<String, Integer> loadIssueMappings(File mappingsFile) throws IOException {
-		Properties props = new Properties();
-		props.load(new FileInputStream(mappingsFile));
-		Map<String, Integer> result = new HashMap<>();
-		props.stringPropertyNames().forEach(name -> result.put(name, Integer.valueOf(props.getProperty(name))));
-		return result;
 	}
 
 }
@@ -17,19 +17,29 @@ package io.pivotal.migration;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import io.pivotal.github.GitHubRestTemplate;
+import io.pivotal.github.GitHubCredentialPool;
+import io.pivotal.github.GitHubWebClient;
 import io.pivotal.github.GithubComment;
 import io.pivotal.github.GithubConfig;
 import io.pivotal.github.GithubIssue;
@@ -45,14 +55,16 @@ import io.pivotal.jira.JiraVersion;
 import io.pivotal.util.MarkupEngine;
 import io.pivotal.util.MarkupManager;
 import io.pivotal.util.ProgressTracker;
-import io.pivotal.util.RateLimitHelper;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -63,12 +75,13 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.RequestEntity.BodyBuilder;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
+import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -91,7 +104,19 @@ public class  MigrationClient {
 	private static final ParameterizedTypeReference<List<Map<String, Object>>> LIST_OF_MAPS_TYPE =
 			new ParameterizedTypeReference<List<Map<String, Object>>>() {};
 
-	private static final String GITHUB_URL = "https://api.github.com";
+	private static final int PAGE_SIZE = 100;
+
+	private static final Pattern LAST_PAGE_PATTERN = Pattern.compile("[?&]page=(\\d+)[^>]*>; rel=\"last\"");
+
+	/** Concurrent requests for pages of milestones or labels. */
+	private static final int LIST_CONCURRENCY = 4;
+
+	/**
+	 * Concurrent requests to create or update milestones or labels. The
+	 * RateLimitHelper allows one such request per second, so this is only
+	 * to overlap the latency of one request with the wait for the next.
+	 */
+	private static final int WRITE_CONCURRENCY = 2;
 
 
 	private final GithubConfig config;
@@ -107,12 +132,8 @@ public class  MigrationClient {
 	/** For assignees */
 	Map<String, String> jiraToGithubUsername;
 
-	// From https://developer.github.com/v3/guides/best-practices-for-integrators/#dealing-with-rate-limits
-	// If you're making a large number of POST, PATCH, PUT, or DELETE requests
-	// for a single user or client ID, wait at least one second between each request.
-	private final RateLimitHelper rateLimitHelper = new RateLimitHelper();
-
-	private final GitHubRestTemplate rest = new GitHubRestTemplate(rateLimitHelper, logger);
+	// Rate limits for POST, PATCH/PUT/DELETE combined, and for GET requests, per token, see RateLimitHelper
+	private final GitHubWebClient webClient;
 
 	private final DateTime migrationDateTime = DateTime.now();
 
@@ -120,7 +141,8 @@ public class  MigrationClient {
 
 	private final BodyBuilder importRequestBuilder;
 
-	private int importBatchSize = 100;
+	/** Number of threads to prepare (convert markup, select labels, etc) issues with. */
+	private int preparationParallelism = Runtime.getRuntime().availableProcessors();
 
 
 	@Autowired
@@ -132,17 +154,27 @@ public class  MigrationClient {
 		this.milestoneFilter = milestoneFilter;
 		this.labelHandler = labelHandler;
 		this.issueProcessor = issueProcessor;
+		this.webClient = new GitHubWebClient(config.getApiUrl(),
+				new GitHubCredentialPool(config.getAccessToken(), config.getReadAccessTokens()));
 		this.importRequestBuilder =
 				getRepositoryRequestBuilder(HttpMethod.POST, "/import/issues")
 						.accept(new MediaType("application", "vnd.github.golden-comet-preview+json"));
 	}
 
 	private BodyBuilder getRepositoryRequestBuilder(HttpMethod httpMethod, String path) {
-		String url = GITHUB_URL + "/repos/" + this.config.getRepositorySlug() + path;
+		String url = this.config.getApiUrl() + "/repos/" + this.config.getRepositorySlug() + path;
 		return RequestEntity.method(httpMethod, URI.create(url))
 				.header(HttpHeaders.AUTHORIZATION, "token " + this.config.getAccessToken());
 	}
 
+	/**
+	 * Set the number of threads to prepare issues for import with.
+	 * <p>By default, the number of available processors.
+	 */
+	public void setPreparationParallelism(int preparationParallelism) {
+		this.preparationParallelism = preparationParallelism;
+	}
+
 	@SuppressWarnings("unused")
 	@Autowired
 	public void setUserMappingResource(
@@ -167,7 +199,7 @@ public class  MigrationClient {
 		logger.info("Deleting repository {}", slug);
 
 		BodyBuilder requestBuilder = getRepositoryRequestBuilder(HttpMethod.DELETE, "");
-		getRest().exchange(requestBuilder.build(), MAP_TYPE);
+		this.webClient.exchange(requestBuilder.build(), MAP_TYPE).block();
 
 		return true;
 	}
@@ -185,43 +217,114 @@ public class  MigrationClient {
 		repository.put("private", "true");
 
 		RequestEntity<Map<String, String>> requestEntity =
-				RequestEntity.post(URI.create(GITHUB_URL + "/user/repos"))
+				RequestEntity.post(URI.create(this.config.getApiUrl() + "/user/repos"))
 						.header(HttpHeaders.AUTHORIZATION, "token " + this.config.getAccessToken())
 						.body(repository);
 
-		getRest().exchange(requestEntity, MAP_TYPE);
+		this.webClient.exchange(requestEntity, MAP_TYPE).block();
 	}
 
+	/**
+	 * Create a milestone for each Jira version that passes the
+	 * {@link MilestoneFilter}, unless it exists already, in which case its
+	 * state and due date are updated if different. This makes it safe to
+	 * re-run, and quick if there is nothing to do.
+	 */
 	public void createMilestones(List<JiraVersion> versions) {
-		BodyBuilder requestBuilder = getRepositoryRequestBuilder(HttpMethod.POST, "/milestones");
-		versions = versions.stream().filter(milestoneFilter).collect(Collectors.toList());
-		logger.info("Creating {} milestones", versions.size());
-		ProgressTracker tracker = new ProgressTracker(versions.size(), 1, 50, logger.isDebugEnabled());
+		Map<String, Map<String, Object>> existingMilestones = retrieveMilestones();
+		List<RequestEntity<?>> requests = new ArrayList<>();
 		for (JiraVersion version : versions) {
-			tracker.updateForIteration();
+			if (!this.milestoneFilter.test(version)) {
+				continue;
+			}
 			Map<String, String> map = new LinkedHashMap<>();
 			map.put("title", version.getName());
 			map.put("state", version.isReleased() ? "closed" : "open");
 			if (version.getReleaseDate() != null) {
 				map.put("due_on", version.getReleaseDate().toString(dateTimeFormatter));
 			}
-			this.getRest().exchange(requestBuilder.body(map), MAP_TYPE);
+			Map<String, Object> milestone = existingMilestones.get(version.getName());
+			if (milestone == null) {
+				requests.add(getRepositoryRequestBuilder(HttpMethod.POST, "/milestones").body(map));
+			}
+			else if (!isSameMilestone(milestone, map)) {
+				String path = "/milestones/" + milestone.get("number");
+				requests.add(getRepositoryRequestBuilder(HttpMethod.PATCH, path).body(map));
+			}
 		}
-		tracker.stopProgress();
+		logger.info("Creating or updating {} milestones ({} exist)", requests.size(), existingMilestones.size());
+		sendAll(requests);
 	}
 
-	public void createLabels() {
+	private boolean isSameMilestone(Map<String, Object> milestone, Map<String, String> map) {
+		if (!map.get("state").equals(milestone.get("state"))) {
+			return false;
+		}
+		String dueOn = map.get("due_on");
+		String existingDueOn = (String) milestone.get("due_on");
+		if (dueOn == null || existingDueOn == null) {
+			return (dueOn == null && existingDueOn == null);
+		}
+		// GitHub keeps only the date, in its own time zone
+		long millis = this.dateTimeFormatter.parseMillis(dueOn) - this.dateTimeFormatter.parseMillis(existingDueOn);
+		return (Math.abs(millis) < DateTimeConstants.MILLIS_PER_DAY);
+	}
 
-		BodyBuilder bodyBuilder = getRepositoryRequestBuilder(HttpMethod.POST, "/labels");
+	/**
+	 * Create the labels from the {@link LabelHandler}, unless they exist
+	 * already, in which case their color is updated if different. This makes
+	 * it safe to re-run, and quick if there is nothing to do.
+	 */
+	public void createLabels() {
+		Map<String, Map<String, Object>> existingLabels = new HashMap<>();
+		for (Map<String, Object> label : listAll("/labels").block()) {
+			// Label names are case-insensitive
+			existingLabels.put(((String) label.get("name")).toLowerCase(Locale.ROOT), label);
+		}
+		List<RequestEntity<?>> requests = new ArrayList<>();
+		for (Map<String, String> map : this.labelHandler.getAllLabels()) {
+			String name = map.get("name");
+			Map<String, Object> label = existingLabels.get(name.toLowerCase(Locale.ROOT));
+			if (label == null) {
+				logger.debug("Creating label: \"{}\"", map);
+				requests.add(getRepositoryRequestBuilder(HttpMethod.POST, "/labels").body(map));
+			}
+			else if (!map.get("color").equalsIgnoreCase((String) label.get("color"))) {
+				logger.debug("Updating label: \"{}\"", map);
+				URI uri = UriComponentsBuilder
+						.fromUriString(this.config.getApiUrl() + "/repos/" + this.config.getRepositorySlug())
+						.path("/labels/{name}").encode().buildAndExpand(label.get("name")).toUri();
+				requests.add(RequestEntity.patch(uri)
+						.header(HttpHeaders.AUTHORIZATION, "token " + this.config.getAccessToken())
+						.body(map));
+			}
+		}
+		logger.info("Creating or updating {} labels ({} exist)", requests.size(), existingLabels.size());
+		sendAll(requests);
+	}
 
-		Set<Map<String, String>> labels = labelHandler.getAllLabels();
-		logger.info("Creating labels: {}", labels);
-		ProgressTracker tracker = new ProgressTracker(labels.size(), logger.isDebugEnabled());
-		for (Map<String, String> map : labels) {
-			tracker.updateForIteration();
-			logger.debug("Creating label: \"{}\"", map);
-			getRest().exchange(bodyBuilder.body(map), MAP_TYPE);
+	/**
+	 * Send requests to create or update content, tolerating 422 responses,
+	 * e.g. for a label that exists with a different case.
+	 */
+	private void sendAll(List<RequestEntity<?>> requests) {
+		if (requests.isEmpty()) {
+			return;
 		}
+		ProgressTracker tracker = new ProgressTracker(requests.size(), 1, 50, logger.isDebugEnabled());
+		Flux.fromIterable(requests)
+				.flatMap(request -> this.webClient.exchange(request, MAP_TYPE)
+						.onErrorResume(WebClientResponseException.UnprocessableEntity.class, ex -> {
+							logger.warn("{} {} rejected: {}", request.getMethod(), request.getBody(),
+									ex.getResponseBodyAsString());
+							return Mono.empty();
+						})
+						.doFinally(signal -> {
+							synchronized (tracker) {
+								tracker.updateForIteration();
+							}
+						}), WRITE_CONCURRENCY)
+				.blockLast();
 		tracker.stopProgress();
 	}
 
@@ -241,80 +344,103 @@ public class  MigrationClient {
 		logger.info("Collecting lists of backport issues by milestone");
 		MultiValueMap<Map<String, Object>, JiraIssue> backportMap = collectBackports(publicIssues, milestones);
 
+		// Imports submitted in a previous run, but not resolved, are checked rather than submitted again
+		Map<Boolean, List<JiraIssue>> partitioned = context.filterRemaingIssuesToImport(publicIssues).stream()
+				.collect(Collectors.partitioningBy(issue -> context.getSubmittedImportUrl(issue, null) != null));
+		List<JiraIssue> submittedIssues = partitioned.get(true);
+		List<JiraIssue> importIssues = partitioned.get(false);
+
 		logger.info("Preparing for import (wiki to markdown, select labels, format Jira details, etc)");
-		List<JiraIssue> importIssues = context.filterRemaingIssuesToImport(publicIssues);
-		List<ImportGithubIssue> importData = importIssues.stream()
-				.map(jiraIssue -> {
-					issueProcessor.beforeConversion(jiraIssue);
-					ImportGithubIssue issueToImport = new ImportGithubIssue();
-					issueToImport.setIssue(initGithubIssue(jiraIssue, milestones, restrictedIssueKeys));
-					issueToImport.setComments(initComments(jiraIssue));
-					issueProcessor.beforeImport(jiraIssue, issueToImport);
-					return issueToImport;
-				})
-				.collect(Collectors.toList());
+		List<ImportGithubIssue> importData = prepareIssues(importIssues, milestones, restrictedIssueKeys);
+
+		try (ImportStatusPoller poller = new ImportStatusPoller(
+				this::checkImportStatus, this::listImportStatuses, context,
+				ImportStatusPoller.DEFAULT_INITIAL_DELAY, ImportStatusPoller.DEFAULT_MAX_DELAY,
+				ImportStatusPoller.DEFAULT_CONCURRENCY)) {
+			if (!submittedIssues.isEmpty()) {
+				logger.info("Resuming {} imports submitted in a previous run", submittedIssues.size());
+				submittedIssues.forEach(issue -> poller.submit(new ImportedIssue(issue, null,
+						getSubmittedImportResponse(context.getSubmittedImportUrl(issue, null)))));
+			}
+			logger.info("Starting to import {} issues", importIssues.size());
+			ProgressTracker tracker1 = new ProgressTracker(importIssues.size(), 4, 200, logger.isDebugEnabled());
+			for (int i = 0, issuesSize = importIssues.size(); i < issuesSize; i++) {
+				tracker1.updateForIteration();
+				ImportGithubIssueResponse importResponse = executeIssueImport(importData.get(i), context);
+				ImportedIssue importedIssue = new ImportedIssue(importIssues.get(i), null, importResponse);
+				context.addSubmittedImport(importedIssue);
+				poller.submit(importedIssue);
+			}
+			tracker1.stopProgress();
 
-		logger.info("Starting to import {} issues (2 requests per issue/iteration)", importIssues.size());
-		ProgressTracker tracker1 = new ProgressTracker(importIssues.size(), 4, 200, logger.isDebugEnabled());
-		List<ImportedIssue> importedIssues = new ArrayList<>(importIssues.size());
-		for (int i = 0, issuesSize = importIssues.size(); i < issuesSize; i++) {
-			tracker1.updateForIteration();
-			ImportGithubIssueResponse importResponse = executeIssueImport(importData.get(i), context);
-			importedIssues.add(new ImportedIssue(importIssues.get(i), null, importResponse));
-			if (i % importBatchSize == 0 && i != 0) {
-				for (int j = i - importBatchSize; j <= i; j++) {
-					if (!checkImportResult(importedIssues.get(j), context)) {
-						logger.error("Detected import failure for " + importIssues.get(i).getKey());
-						break;
-					}
-				}
+			logger.info("Waiting for {} remaining import results", poller.getUnresolvedCount());
+			poller.awaitCompletion();
+			if (context.getFailedImportCount() == 0) {
+				logger.info("0 failures");
+			}
+			else {
+				int failed = context.getFailedImportCount();
+				int total = importIssues.size() + submittedIssues.size();
+				logger.error(failed + " failed, " + (total - failed) + " succeeded, " + total + " total");
+				return;
 			}
-		}
-		tracker1.stopProgress();
 
-		logger.info("Checking remaining import results");
-		importedIssues.forEach(issue -> checkImportResult(issue, context));
-		if (context.getFailedImportCount() == 0) {
-			logger.info("0 failures");
-		}
-		else {
-			int failed = context.getFailedImportCount();
-			int total = importedIssues.size();
-			logger.error(failed + " failed, " + (total - failed) + " succeeded, " + total + " total");
-			return;
+			if (context.isCompletedPhase(MigrationContext.BACKPORT_ISSUE_HOLDERS_PHASE)) {
+				logger.info("Backport issue holders were created in a previous run");
+				return;
+			}
+			logger.info("{} backport issue holders to create", backportMap.size());
+			if (backportMap.isEmpty()) {
+				return;
+			}
+			List<ImportedIssue> backportIssueHolders = new ArrayList<>(backportMap.size());
+			ProgressTracker tracker2 = new ProgressTracker(backportMap.size(), logger.isDebugEnabled());
+			backportMap.keySet().forEach(milestone -> {
+				tracker2.updateForIteration();
+				if (context.isBackportIssueHolderImported(milestone)) {
+					return;
+				}
+				String submittedUrl = context.getSubmittedImportUrl(null, milestone);
+				ImportedIssue importedIssue;
+				if (submittedUrl != null) {
+					importedIssue = new ImportedIssue(null, milestone, getSubmittedImportResponse(submittedUrl));
+				}
+				else {
+					GithubIssue ghIssue = initMilestoneBackportIssue(milestone, backportMap.get(milestone), context);
+					ImportGithubIssue toImport = new ImportGithubIssue();
+					toImport.setIssue(ghIssue);
+					ImportGithubIssueResponse importResponse = executeIssueImport(toImport, context);
+					importedIssue = new ImportedIssue(null, milestone, importResponse);
+					context.addSubmittedImport(importedIssue);
+				}
+				backportIssueHolders.add(importedIssue);
+				poller.submit(importedIssue);
+			});
+			tracker2.stopProgress();
+			logger.info("Waiting for import results for backport issue holders");
+			poller.awaitCompletion();
+			if (context.getFailedImportCount() == 0) {
+				logger.info("0 failures");
+				context.addCompletedPhase(MigrationContext.BACKPORT_ISSUE_HOLDERS_PHASE);
+			}
+			else {
+				List<String> failed = backportIssueHolders.stream()
+						.filter(issue -> issue.getIssueNumber() == null)
+						.map(issue -> (String) issue.getMilestone().get("title"))
+						.collect(Collectors.toList());
+				List<String> succeeded = backportIssueHolders.stream()
+						.filter(issue -> issue.getIssueNumber() != null)
+						.map(issue -> (String) issue.getMilestone().get("title"))
+						.collect(Collectors.toList());
+				logger.error("Failed:\n" + failed + "\nSucceeded:\n" + succeeded);
+			}
 		}
+	}
 
-		logger.info("{} backport issue holders to create", backportMap.size());
-		if (backportMap.isEmpty()) {
-			return;
-		}
-		List<ImportedIssue> backportIssueHolders = new ArrayList<>(backportMap.size());
-		ProgressTracker tracker2 = new ProgressTracker(backportIssueHolders.size(), logger.isDebugEnabled());
-		backportMap.keySet().forEach(milestone -> {
-			tracker2.updateForIteration();
-			GithubIssue ghIssue = initMilestoneBackportIssue(milestone, backportMap.get(milestone), context);
-			ImportGithubIssue toImport = new ImportGithubIssue();
-			toImport.setIssue(ghIssue);
-			ImportGithubIssueResponse importResponse = executeIssueImport(toImport, context);
-			backportIssueHolders.add(new ImportedIssue(null, milestone, importResponse));
-		});
-		tracker2.stopProgress();
-		logger.info("Checking import results for backport issue holders");
-		backportIssueHolders.forEach(issue -> checkImportResult(issue, context));
-		if (context.getFailedImportCount() == 0) {
-			logger.info("0 failures");
-		}
-		else {
-			List<String> failed = backportIssueHolders.stream()
-					.filter(issue -> !checkImportResult(issue, context))
-					.map(issue -> (String) issue.getMilestone().get("title"))
-					.collect(Collectors.toList());
-			List<String> succeeded = backportIssueHolders.stream()
-					.filter(i -> checkImportResult(i, context))
-					.map(issue -> (String) issue.getMilestone().get("title"))
-					.collect(Collectors.toList());
-			logger.error("Failed:\n" + failed + "\nSucceeded:\n" + succeeded);
-		}
+	private static ImportGithubIssueResponse getSubmittedImportResponse(String importUrl) {
+		ImportGithubIssueResponse response = new ImportGithubIssueResponse();
+		response.setUrl(importUrl);
+		return response;
 	}
 
 	private Map<String, JiraUser> collectUsers(List<JiraIssue> issues) {
@@ -331,16 +457,61 @@ public class  MigrationClient {
 
 	private Map<String, Map<String, Object>> retrieveMilestones() {
 		Map<String, Map<String, Object>> result = new LinkedHashMap<>();
-		for (int page = 1; ; page++){
-			String path = "/milestones?state=all&per_page=100&page=" + page;
-			RequestEntity<?> request = getRepositoryRequestBuilder(HttpMethod.GET, path).build();
-			List<Map<String, Object>> milestones = getRest().exchange(request, LIST_OF_MAPS_TYPE).getBody();
-			if (CollectionUtils.isEmpty(milestones)) {
-				break;
+		listAll("/milestones?state=all").block()
+				.forEach(milestone -> result.put((String) milestone.get("title"), milestone));
+		return result;
+	}
+
+	/**
+	 * List all items under the given repository path. Once the first page
+	 * shows the number of the last page in its "Link" header, the remaining
+	 * pages are requested concurrently. Without that, pages are requested
+	 * one at a time, until one is not full.
+	 */
+	private Mono<List<Map<String, Object>>> listAll(String path) {
+		String pagePath = path + (path.contains("?") ? "&" : "?") + "per_page=" + PAGE_SIZE + "&page=";
+		return listPage(pagePath, 1).flatMap(firstPage -> {
+			List<Map<String, Object>> items = new ArrayList<>(getBody(firstPage));
+			int lastPage = getLastPage(firstPage.getHeaders());
+			if (lastPage > 1) {
+				return Flux.range(2, lastPage - 1)
+						.flatMapSequential(page -> listPage(pagePath, page), LIST_CONCURRENCY)
+						.doOnNext(entity -> items.addAll(getBody(entity)))
+						.then(Mono.just(items));
 			}
-			milestones.forEach(milestone -> result.put((String) milestone.get("title"), milestone));
+			return listRemainingPages(pagePath, 2, items);
+		});
+	}
+
+	private Mono<List<Map<String, Object>>> listRemainingPages(
+			String pagePath, int page, List<Map<String, Object>> items) {
+
+		if (items.size() < (page - 1) * PAGE_SIZE) {
+			return Mono.just(items);
 		}
-		return result;
+		return listPage(pagePath, page).flatMap(entity -> {
+			List<Map<String, Object>> body = getBody(entity);
+			if (body.isEmpty()) {
+				return Mono.just(items);
+			}
+			items.addAll(body);
+			return listRemainingPages(pagePath, page + 1, items);
+		});
+	}
+
+	private Mono<ResponseEntity<List<Map<String, Object>>>> listPage(String pagePath, int page) {
+		RequestEntity<?> request = getRepositoryRequestBuilder(HttpMethod.GET, pagePath + page).build();
+		return this.webClient.exchange(request, LIST_OF_MAPS_TYPE);
+	}
+
+	private static List<Map<String, Object>> getBody(ResponseEntity<List<Map<String, Object>>> entity) {
+		return (entity.getBody() != null ? entity.getBody() : Collections.emptyList());
+	}
+
+	private static int getLastPage(HttpHeaders headers) {
+		String link = headers.getFirst(HttpHeaders.LINK);
+		Matcher matcher = (link != null ? LAST_PAGE_PATTERN.matcher(link) : null);
+		return (matcher != null && matcher.find() ? Integer.parseInt(matcher.group(1)) : 1);
 	}
 
 	private MultiValueMap<Map<String, Object>, JiraIssue> collectBackports(
@@ -358,6 +529,50 @@ public class  MigrationClient {
 		return backportMap;
 	}
 
+	/**
+	 * Prepare issues for import in parallel, returning the results in the
+	 * same order as the input issues.
+	 */
+	List<ImportGithubIssue> prepareIssues(List<JiraIssue> issues,
+			Map<String, Map<String, Object>> milestones, List<String> restrictedIssueKeys) {
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.preparationParallelism));
+		try {
+			List<Future<ImportGithubIssue>> futures = issues.stream()
+					.map(jiraIssue -> executor.submit(() -> prepareIssue(jiraIssue, milestones, restrictedIssueKeys)))
+					.collect(Collectors.toList());
+			List<ImportGithubIssue> result = new ArrayList<>(futures.size());
+			ProgressTracker tracker = new ProgressTracker(futures.size(), 4, 200, logger.isDebugEnabled());
+			for (Future<ImportGithubIssue> future : futures) {
+				tracker.updateForIteration();
+				result.add(future.get());
+			}
+			tracker.stopProgress();
+			return result;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while preparing issues for import", ex);
+		}
+		catch (ExecutionException ex) {
+			throw new IllegalStateException("Failed to prepare issues for import", ex.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private ImportGithubIssue prepareIssue(JiraIssue jiraIssue, Map<String, Map<String, Object>> milestones,
+			List<String> restrictedIssueKeys) {
+
+		issueProcessor.beforeConversion(jiraIssue);
+		ImportGithubIssue issueToImport = new ImportGithubIssue();
+		issueToImport.setIssue(initGithubIssue(jiraIssue, milestones, restrictedIssueKeys));
+		issueToImport.setComments(initComments(jiraIssue));
+		issueProcessor.beforeImport(jiraIssue, issueToImport);
+		return issueToImport;
+	}
+
 	private GithubIssue initGithubIssue(JiraIssue issue, Map<String, Map<String, Object>> milestones,
 			List<String> restrictedIssues) {
 
@@ -554,7 +769,7 @@ public class  MigrationClient {
 		Throwable failure = null;
 		try {
 			RequestEntity<ImportGithubIssue> request = importRequestBuilder.body(importIssue);
-			response = getRest().exchange(request, ImportGithubIssueResponse.class).getBody();
+			response = this.webClient.exchange(request, ImportGithubIssueResponse.class).block().getBody();
 			if (response != null) {
 				response.setImportIssue(importIssue);
 			}
@@ -573,65 +788,77 @@ public class  MigrationClient {
 		return response;
 	}
 
-	private boolean checkImportResult(ImportedIssue importedIssue, MigrationContext context) {
-		if(importedIssue.getIssueNumber() != null) {
+	/**
+	 * Check the status of an import once, setting the issue number or the
+	 * failure once known. A failure to check, e.g. a 5xx response, is passed
+	 * on as an error, rather than as a failed import, since the import may
+	 * yet succeed, see {@link ImportStatusPoller}.
+	 * @return {@code true} if resolved, or {@code false} if still pending
+	 */
+	private Mono<Boolean> checkImportStatus(ImportedIssue importedIssue) {
+		if (importedIssue.getIssueNumber() != null || importedIssue.getFailure() != null) {
+			return Mono.just(true);
+		}
+		if (importedIssue.getImportResponse() == null) {
+			importedIssue.setFailure("No body from import request");
+			return Mono.just(true);
+		}
+		String importUrl = importedIssue.getImportResponse().getUrl();
+		URI uri = UriComponentsBuilder.fromUriString(importUrl).build().toUri();
+		RequestEntity<Void> request = RequestEntity.get(uri)
+				.accept(new MediaType("application", "vnd.github.golden-comet-preview+json"))
+				.header("Authorization", "token " + this.config.getAccessToken())
+				.build();
+		return this.webClient.exchange(request, MAP_TYPE)
+				.map(entity -> {
+					Map<String, Object> body = entity.getBody();
+					Assert.state(body != null, () -> "No body from import result request: " + importUrl);
+					return updateImportStatus(importedIssue, body);
+				});
+	}
+
+	/**
+	 * List the status of all imports created since the given time with one
+	 * request. The list does not include the URL of imported issues, so
+	 * those still need to be checked one by one with
+	 * {@link #checkImportStatus(ImportedIssue)}.
+	 * @return the status of each import by the URL of the import
+	 */
+	private Mono<Map<String, String>> listImportStatuses(Instant since) {
+		String path = "/import/issues?since=" + since.truncatedTo(ChronoUnit.SECONDS);
+		RequestEntity<Void> request = getRepositoryRequestBuilder(HttpMethod.GET, path)
+				.accept(new MediaType("application", "vnd.github.golden-comet-preview+json"))
+				.build();
+		return this.webClient.exchange(request, LIST_OF_MAPS_TYPE)
+				.map(entity -> {
+					Map<String, String> statuses = new HashMap<>();
+					if (entity.getBody() != null) {
+						for (Map<String, Object> status : entity.getBody()) {
+							statuses.put((String) status.get("url"), (String) status.get("status"));
+						}
+					}
+					return statuses;
+				});
+	}
+
+	private static boolean updateImportStatus(ImportedIssue importedIssue, Map<String, Object> body) {
+		String url = (String) body.get("issue_url");
+		String status = (String) body.get("status");
+		if ("failed".equals(status)) {
+			importedIssue.setFailure("status: " + body);
 			return true;
 		}
-		if (importedIssue.getFailure() != null) {
+		else if ("pending".equals(status)) {
+			JiraIssue jiraIssue = importedIssue.getJiraIssue();
+			logger.debug("{} import still pending",
+					jiraIssue != null ? jiraIssue.getKey() : importedIssue.getImportResponse().getUrl());
 			return false;
 		}
-		JiraIssue jiraIssue = importedIssue.getJiraIssue();
-		try {
-			if (importedIssue.getImportResponse() == null) {
-				importedIssue.setFailure("No body from import request");
-				return false;
-			}
-			String importUrl = importedIssue.getImportResponse().getUrl();
-			URI uri = UriComponentsBuilder.fromUriString(importUrl).build().toUri();
-			RequestEntity<Void> request = RequestEntity.get(uri)
-					.accept(new MediaType("application", "vnd.github.golden-comet-preview+json"))
-					.header("Authorization", "token " + this.config.getAccessToken())
-					.build();
-			while (true) {
-				Map<String, Object> body;
-				try {
-					body = getRest().exchange(request, MAP_TYPE).getBody();
-				}
-				catch (RestClientException ex) {
-					logger.error("Import failed: " + importUrl, ex);
-					importedIssue.setFailure(ex.getMessage());
-					return false;
-				}
-				if (body == null) {
-					importedIssue.setFailure("No body from import result request");
-					return false;
-				}
-				String url = (String) body.get("issue_url");
-				String status = (String) body.get("status");
-				if ("failed".equals(status)) {
-					importedIssue.setFailure("status: " + body);
-					return false;
-				}
-				else if ("pending".equals(status)) {
-					logger.debug("{} import still pending. Waiting 1 second",
-							jiraIssue != null ? jiraIssue.getKey() : importUrl);
-					rateLimitHelper.obtainPermitToCall();
-					continue;
-				}
-				if (url == null) {
-					importedIssue.setFailure("No URL for imported issue: " + body);
-					return false;
-				}
-				UriComponents parts = UriComponentsBuilder.fromUriString(url).build();
-				List<String> segments = parts.getPathSegments();
-				int issueNumber = Integer.parseInt(segments.get(segments.size() - 1));
-				importedIssue.setIssueNumber(issueNumber);
-				return true;
-			}
-		}
-		finally {
-			context.addImportResult(importedIssue);
-		}
+		Assert.state(url != null, () -> "No URL for imported issue: " + body);
+		UriComponents parts = UriComponentsBuilder.fromUriString(url).build();
+		List<String> segments = parts.getPathSegments();
+		importedIssue.setIssueNumber(Integer.parseInt(segments.get(segments.size() - 1)));
+		return true;
 	}
 
 	private GithubIssue initMilestoneBackportIssue(
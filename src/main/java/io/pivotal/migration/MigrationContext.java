@@ -17,28 +17,48 @@ package io.pivotal.migration;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import io.pivotal.jira.JiraIssue;
+import io.pivotal.util.IssueMappingIndex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
+ * Records the results of a migration run. Import results may be added from
+ * a background thread, see {@link ImportStatusPoller}, so access is synchronized.
+ * <p>If created with a {@link MigrationStateStore}, submitted imports and
+ * import results are also recorded there, so a restarted run can resume
+ * checking submitted imports rather than submitting them again.
+ *
  * @author Rossen Stoyanchev
  */
 public class MigrationContext {
 
 	private static final Logger logger = LogManager.getLogger(MigrationContext.class);
 
+	/** Phase recorded once milestones are created. */
+	public static final String MILESTONES_PHASE = "milestones";
+
+	/** Phase recorded once labels are created. */
+	public static final String LABELS_PHASE = "labels";
+
+	/** Phase recorded once all backport issue holders are imported. */
+	public static final String BACKPORT_ISSUE_HOLDERS_PHASE = "backport-issue-holders";
+
+	private static final String BACKPORTS_KEY_PREFIX = "backports:";
+
 
 	private final Writer mappingsWriter;
 
 	private final Writer failuresWriter;
 
-	private final Map<String, Integer> issueMappings = new HashMap<>();
+	/** Optional, may be {@code null} */
+	private final MigrationStateStore stateStore;
+
+	private final IssueMappingIndex issueMappings = new IssueMappingIndex();
 
 	private int failedImportCount;
 
@@ -46,25 +66,54 @@ public class MigrationContext {
 
 
 	public MigrationContext(Writer mappingsWriter, Writer failuresWriter) {
+		this(mappingsWriter, failuresWriter, null);
+	}
+
+	public MigrationContext(Writer mappingsWriter, Writer failuresWriter, MigrationStateStore stateStore) {
 		this.mappingsWriter = mappingsWriter;
 		this.failuresWriter = failuresWriter;
+		this.stateStore = stateStore;
 	}
 
 
-	public void setPreviouslyImportedIssueMappings(Map<String, Integer> issueMappings) {
+	/**
+	 * Set the issues imported in previous runs, in addition to those confirmed
+	 * in the {@link MigrationStateStore}, if there is one.
+	 */
+	public synchronized void setPreviouslyImportedIssueMappings(IssueMappingIndex issueMappings) {
 		this.issueMappings.clear();
 		this.issueMappings.putAll(issueMappings);
+		if (this.stateStore != null) {
+			this.stateStore.getConfirmedImports().forEach((key, number) -> {
+				if (!key.startsWith(BACKPORTS_KEY_PREFIX)) {
+					this.issueMappings.put(key, number);
+				}
+			});
+		}
 	}
 
-	public List<JiraIssue> filterRemaingIssuesToImport(List<JiraIssue> issues) {
+	public synchronized List<JiraIssue> filterRemaingIssuesToImport(List<JiraIssue> issues) {
 		return issues.stream()
 				.filter(issue -> !issueMappings.containsKey(issue.getKey()))
 				.collect(Collectors.toList());
 	}
 
-	public void addImportResult(MigrationClient.ImportedIssue imported) {
+	/**
+	 * Record an import that was submitted, and is yet to be resolved.
+	 */
+	public synchronized void addSubmittedImport(MigrationClient.ImportedIssue imported) {
+		if (this.stateStore != null && imported.getImportResponse() != null &&
+				imported.getImportResponse().getUrl() != null) {
+			this.stateStore.addSubmittedImport(getStateKey(imported), imported.getImportResponse().getUrl());
+		}
+	}
+
+	public synchronized void addImportResult(MigrationClient.ImportedIssue imported) {
 		JiraIssue jiraIssue = imported.getJiraIssue();
 		if (imported.getIssueNumber() != null) {
+			if (this.stateStore != null) {
+				this.stateStore.addConfirmedImport(getStateKey(imported), imported.getIssueNumber());
+			}
 			if (jiraIssue == null) {
 				backportIssueHolderCount++;
 				return;
@@ -73,13 +122,67 @@ public class MigrationContext {
 			writeLine(mappingsWriter, jiraIssue.getKey() + ":" + imported.getIssueNumber() + "\n");
 		}
 		else {
+			if (this.stateStore != null) {
+				this.stateStore.addFailedImport(getStateKey(imported));
+			}
 			failedImportCount++;
-			String ref = jiraIssue != null ? jiraIssue.getKey() : imported.getMilestone().get("title") + " backports";
-			writeLine(failuresWriter, "=> " + ref + " [" + imported.getFailure() + "]\n");
+			writeLine(failuresWriter, "=> " + getRef(imported) + " [" + imported.getFailure() + "]\n");
+		}
+	}
+
+	/**
+	 * Record a submitted import whose status could not be checked. It counts
+	 * as failed for this run, but it is not recorded as failed in the
+	 * {@link MigrationStateStore}, so the next run checks it again rather
+	 * than submitting it again.
+	 */
+	public synchronized void addUncheckedImport(MigrationClient.ImportedIssue imported, String message) {
+		failedImportCount++;
+		writeLine(failuresWriter, "=> " + getRef(imported) + " [status unknown: " + message + "]\n");
+	}
+
+	private static String getRef(MigrationClient.ImportedIssue imported) {
+		JiraIssue jiraIssue = imported.getJiraIssue();
+		return (jiraIssue != null ? jiraIssue.getKey() : imported.getMilestone().get("title") + " backports");
+	}
+
+	/**
+	 * Return the URL to check the result of an import submitted in a previous
+	 * run, or {@code null} if there is no such import.
+	 * @param jiraIssue the imported issue, or {@code null} for a backport issue holder
+	 * @param milestone the milestone of a backport issue holder
+	 */
+	public synchronized String getSubmittedImportUrl(JiraIssue jiraIssue, Map<String, Object> milestone) {
+		return (this.stateStore != null ? this.stateStore.getSubmittedImportUrl(getStateKey(jiraIssue, milestone)) : null);
+	}
+
+	/**
+	 * Whether the backport issue holder for the milestone was imported in a previous run.
+	 */
+	public synchronized boolean isBackportIssueHolderImported(Map<String, Object> milestone) {
+		return (this.stateStore != null &&
+				this.stateStore.isConfirmedImport(getStateKey(null, milestone)));
+	}
+
+	public boolean isCompletedPhase(String phase) {
+		return (this.stateStore != null && this.stateStore.isCompletedPhase(phase));
+	}
+
+	public void addCompletedPhase(String phase) {
+		if (this.stateStore != null) {
+			this.stateStore.addCompletedPhase(phase);
 		}
 	}
 
-	public void addFailureMessage(String message) {
+	private static String getStateKey(MigrationClient.ImportedIssue imported) {
+		return getStateKey(imported.getJiraIssue(), imported.getMilestone());
+	}
+
+	private static String getStateKey(JiraIssue jiraIssue, Map<String, Object> milestone) {
+		return (jiraIssue != null ? jiraIssue.getKey() : BACKPORTS_KEY_PREFIX + milestone.get("title"));
+	}
+
+	public synchronized void addFailureMessage(String message) {
 		writeLine(failuresWriter, message + "\n");
 	}
 
@@ -93,16 +196,17 @@ public class MigrationContext {
 		}
 	}
 
-	public int getFailedImportCount() {
+	public synchronized int getFailedImportCount() {
 		return failedImportCount;
 	}
 
-	public Integer getGitHubIssueId(String jiraIssueKey) {
-		return issueMappings.get(jiraIssueKey);
+	public synchronized Integer getGitHubIssueId(String jiraIssueKey) {
+		int issueNumber = issueMappings.get(jiraIssueKey);
+		return (issueNumber != IssueMappingIndex.NO_MAPPING ? issueNumber : null);
 	}
 
 	@Override
-	public String toString() {
+	public synchronized String toString() {
 		return this.issueMappings.size() + " imported issues, " +
 				this.failedImportCount + " failed imports, " + backportIssueHolderCount + " backported issue holders";
 	}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Durable record of the progress of a migration, so that a run that stops
+ * for any reason can resume where it left off. It records the URL of each
+ * submitted import, the issue number of each confirmed import, and completed
+ * phases such as the creation of milestones and labels.
+ * <p>The state is kept in an append-only log with one tab-separated record
+ * per line. Each record is written to the file as soon as it's added, so it
+ * survives the process exiting, while {@code fsync} calls, which protect
+ * against the machine going down, are batched. The log is compacted when
+ * opened and closed, and when superseded records, e.g. submitted imports that
+ * have since been confirmed, exceed half the live records.
+ *
+ * @see MigrationContext
+ */
+public class MigrationStateStore implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger(MigrationStateStore.class);
+
+	private static final String SUBMITTED = "S";
+
+	private static final String CONFIRMED = "C";
+
+	private static final String FAILED = "F";
+
+	private static final String COMPLETED_PHASE = "P";
+
+	/** Minimum number of superseded records before compacting. */
+	private static final int COMPACTION_THRESHOLD = 1000;
+
+
+	private final File file;
+
+	private final int syncBatchSize;
+
+	private final long syncIntervalNanos;
+
+	private final Map<String, String> submittedImports = new LinkedHashMap<>();
+
+	private final Map<String, Integer> confirmedImports = new LinkedHashMap<>();
+
+	private final Set<String> completedPhases = new LinkedHashSet<>();
+
+	private FileChannel channel;
+
+	private int recordCount;
+
+	private int unsyncedCount;
+
+	private long lastSyncTime = System.nanoTime();
+
+
+	public MigrationStateStore(File file) throws IOException {
+		this(file, 100, Duration.ofSeconds(1));
+	}
+
+	/**
+	 * Constructor with the {@code fsync} policy.
+	 * @param file the log file
+	 * @param syncBatchSize the maximum number of records to write between syncs
+	 * @param syncInterval the maximum time between syncs, checked as records are added
+	 */
+	public MigrationStateStore(File file, int syncBatchSize, Duration syncInterval) throws IOException {
+		this.file = file;
+		this.syncBatchSize = syncBatchSize;
+		this.syncIntervalNanos = syncInterval.toNanos();
+		if (file.exists()) {
+			load();
+			logger.info("Loaded migration state from {}: {}", file, this);
+		}
+		compact();
+	}
+
+
+	private void load() throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!apply(line.split("\t"))) {
+					// Most likely the last record, partially written before a crash
+					logger.warn("Ignoring invalid migration state record: \"{}\"", line);
+				}
+				this.recordCount++;
+			}
+		}
+	}
+
+	private boolean apply(String[] record) {
+		try {
+			switch (record[0]) {
+				case SUBMITTED:
+					this.submittedImports.put(record[1], record[2]);
+					return true;
+				case CONFIRMED:
+					this.confirmedImports.put(record[1], Integer.parseInt(record[2]));
+					this.submittedImports.remove(record[1]);
+					return true;
+				case FAILED:
+					this.submittedImports.remove(record[1]);
+					return true;
+				case COMPLETED_PHASE:
+					this.completedPhases.add(record[1]);
+					return true;
+				default:
+					return false;
+			}
+		}
+		catch (IndexOutOfBoundsException | NumberFormatException ex) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * Record that an import was submitted, and can be checked at the given URL.
+	 */
+	public synchronized void addSubmittedImport(String key, String importUrl) {
+		append(SUBMITTED, key, importUrl);
+	}
+
+	/**
+	 * Record that a submitted import resulted in the given issue number.
+	 */
+	public synchronized void addConfirmedImport(String key, int issueNumber) {
+		append(CONFIRMED, key, String.valueOf(issueNumber));
+	}
+
+	/**
+	 * Record that a submitted import failed, and should be submitted again.
+	 */
+	public synchronized void addFailedImport(String key) {
+		append(FAILED, key);
+	}
+
+	/**
+	 * Record that a phase of the migration is complete, and sync immediately.
+	 */
+	public synchronized void addCompletedPhase(String phase) {
+		append(COMPLETED_PHASE, phase);
+		sync();
+	}
+
+	/**
+	 * Return the URL of a submitted import with no result yet, or {@code null}.
+	 */
+	public synchronized String getSubmittedImportUrl(String key) {
+		return this.submittedImports.get(key);
+	}
+
+	public synchronized boolean isConfirmedImport(String key) {
+		return this.confirmedImports.containsKey(key);
+	}
+
+	public synchronized Map<String, Integer> getConfirmedImports() {
+		return new LinkedHashMap<>(this.confirmedImports);
+	}
+
+	public synchronized boolean isCompletedPhase(String phase) {
+		return this.completedPhases.contains(phase);
+	}
+
+	public synchronized boolean isEmpty() {
+		return (this.submittedImports.isEmpty() && this.confirmedImports.isEmpty() && this.completedPhases.isEmpty());
+	}
+
+	private void append(String... record) {
+		if (!apply(record)) {
+			throw new IllegalArgumentException("Invalid record: " + String.join(", ", record));
+		}
+		String line = String.join("\t", record) + "\n";
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+			this.recordCount++;
+			this.unsyncedCount++;
+			if (this.unsyncedCount >= this.syncBatchSize ||
+					System.nanoTime() - this.lastSyncTime >= this.syncIntervalNanos) {
+				sync();
+			}
+			int liveCount = getLiveRecordCount();
+			if (this.recordCount - liveCount > Math.max(COMPACTION_THRESHOLD, liveCount / 2)) {
+				compact();
+			}
+		}
+		catch (IOException ex) {
+			logger.error("Failed to write migration state record \"" + line.trim() + "\": " + ex.getMessage());
+		}
+	}
+
+	private int getLiveRecordCount() {
+		return this.submittedImports.size() + this.confirmedImports.size() + this.completedPhases.size();
+	}
+
+	/**
+	 * Force records written so far to the storage device.
+	 */
+	public synchronized void sync() {
+		if (this.unsyncedCount == 0) {
+			return;
+		}
+		try {
+			this.channel.force(false);
+			this.unsyncedCount = 0;
+			this.lastSyncTime = System.nanoTime();
+		}
+		catch (IOException ex) {
+			logger.error("Failed to sync migration state: " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Replace the log with only the live records, via a temporary file that's
+	 * synced and atomically moved into place.
+	 */
+	private void compact() throws IOException {
+		if (this.channel != null) {
+			this.channel.close();
+		}
+		File directory = this.file.getAbsoluteFile().getParentFile();
+		Files.createDirectories(directory.toPath());
+		File tempFile = new File(directory, this.file.getName() + ".tmp");
+		StringBuilder content = new StringBuilder();
+		this.completedPhases.forEach(phase -> appendLine(content, COMPLETED_PHASE, phase));
+		this.confirmedImports.forEach((key, number) -> appendLine(content, CONFIRMED, key, String.valueOf(number)));
+		this.submittedImports.forEach((key, url) -> appendLine(content, SUBMITTED, key, url));
+		try (FileChannel tempChannel = FileChannel.open(tempFile.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) {
+				tempChannel.write(buffer);
+			}
+			tempChannel.force(true);
+		}
+		Files.move(tempFile.toPath(), this.file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.recordCount = getLiveRecordCount();
+		this.unsyncedCount = 0;
+		this.lastSyncTime = System.nanoTime();
+		this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private static void appendLine(StringBuilder content, String... record) {
+		content.append(String.join("\t", record)).append('\n');
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		sync();
+		compact();
+		this.channel.close();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return this.confirmedImports.size() + " confirmed imports, " +
+				this.submittedImports.size() + " submitted imports, completed phases " + this.completedPhases;
+	}
+
+}
@@ -18,14 +18,18 @@ package io.pivotal.post;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.springframework.http.RequestEntity;
 import org.springframework.util.CollectionUtils;
-import org.springframework.web.util.UriComponentsBuilder;
 
 /**
  * App to bulk close tickets on the GitHub side as a post migration task.
@@ -44,6 +48,15 @@ import org.springframework.web.util.UriComponentsBuilder;
  * It should be safe to then re-run this App, which can figure out what has already
  * been updated.
  *
+ * <p>Issues are read with their comments a page at a time through GraphQL,
+ * with the next page read while the current one is processed. Comments are
+ * added from one thread, and issues closed from another, paced together by
+ * the {@link io.pivotal.util.RateLimitHelper} limit for mutating requests.
+ * Processed issues, and the cursor after the last page that, along with all
+ * pages before it, had all issues processed, are recorded in
+ * "bulk-issue-closing-progress.txt", so a re-run resumes from there. Delete
+ * that file to start over, e.g. after labeling more issues.
+ *
  * @author Rossen Stoyanchev
  */
 public class BulkIssueClosingApp extends GitHubBaseApp {
@@ -53,70 +66,106 @@ public class BulkIssueClosingApp extends GitHubBaseApp {
 
 	private static final String TARGET_LABEL = "status: bulk-closed";
 
+	/** Checkpoint key for the cursor after the last page with all issues up to it processed. */
+	private static final String CURSOR_KEY = "cursor";
+
+	/** Limit on issues read ahead of the updates, to bound memory use. */
+	private static final int MAX_PENDING_ISSUES = 200;
+
 
 	public static void main(String[] args) throws IOException {
 
 		File failuresFile = new File("bulk-issue-closing-failures.txt");
-		try (FileWriter failWriter = new FileWriter(failuresFile, true)) {
+		File progressFile = new File("bulk-issue-closing-progress.txt");
+		List<String> labels = Collections.singletonList(TARGET_LABEL);
+
+		ExecutorService commentExecutor = Executors.newSingleThreadExecutor();
+		ExecutorService closeExecutor = Executors.newSingleThreadExecutor();
+
+		try (FileWriter failWriter = new FileWriter(failuresFile, true);
+			 ProgressCheckpoint checkpoint = new ProgressCheckpoint(progressFile);
+			 PrefetchingIssuePaginator paginator = new PrefetchingIssuePaginator(
+					 initGraphQlReader(), labels, checkpoint.getValue(CURSOR_KEY))) {
 
-			UriComponentsBuilder uricBuilder = UriComponentsBuilder.newInstance()
-					.uriComponents(issuesUric)
-					.queryParam("page", "{page}")
-					.queryParam("state", "all")
-					.queryParam("labels", "{labels}")
-					.uriVariables(Collections.singletonMap("labels", TARGET_LABEL));
+			Semaphore pendingIssues = new Semaphore(MAX_PENDING_ISSUES);
+			AtomicBoolean commentFailed = new AtomicBoolean();
+			// Set once any page has a failed issue: later pages must not move the cursor past it
+			AtomicBoolean earlierPageFailed = new AtomicBoolean();
+			CompletableFuture<Void> previousPages = CompletableFuture.completedFuture(null);
 
 			int page = 1;
-			while (true){
-				RequestEntity<Void> pageRequest = issuesPageRequest(uricBuilder, page);
-				List<Map<String, Object>> issues = exchange(pageRequest, LIST_OF_MAPS_TYPE, failWriter, null);
-				logger.info("Page " + page + ": " + (issues != null ? issues.size() + " issues" : "no results (exiting)"));
-				if (issues == null) {
-					logger.info("No results, exiting..");
-					break;
-				}
-				if (issues.isEmpty()) {
-					logger.info("Done, exiting..");
-					break;
-				}
-				AtomicBoolean failed = new AtomicBoolean();
-				for (Map<String, Object> map : issues) {
-					Integer ghIssueId = (Integer) map.get("number");
-					logger.info("Issue: " + ghIssueId);
-					RequestEntity<Void> commentsRequest = getCommentsRequest(ghIssueId);
-					List<Map<String, Object>> comments = exchange(commentsRequest, LIST_OF_MAPS_TYPE, failWriter, null);
-					if (needsComment(comments)) {
-						exchange(addCommentRequest(ghIssueId), Void.class, failWriter, failed);
-						if (failed.get()) {
-							break;
-						}
-					}
-					String state = (String) map.get("state");
-					if (state.equals("open")) {
-						exchange(closeIssueRequest(ghIssueId), Void.class, failWriter, null);
+			while (paginator.hasNext() && !commentFailed.get()) {
+				GitHubGraphQlReader.IssuePage issuePage = paginator.next();
+				logger.info("Page " + page + ": " + issuePage.getIssues().size() + " issues");
+				AtomicBoolean pageFailed = new AtomicBoolean();
+				List<CompletableFuture<Void>> futures = new ArrayList<>();
+				for (GitHubGraphQlReader.Issue issue : issuePage.getIssues()) {
+					String issueKey = "#" + issue.getNumber();
+					if (checkpoint.isCompleted(issueKey)) {
+						continue;
 					}
+					boolean comment = needsComment(issue.getComments().getNodes());
+					boolean close = issue.getState().equals("OPEN");
+					pendingIssues.acquire();
+					futures.add(CompletableFuture
+							.runAsync(() -> {
+								if (comment && !commentFailed.get()) {
+									logger.info("Commenting on issue: " + issue.getNumber());
+									exchange(addCommentRequest(issue.getNumber()), Void.class, failWriter, commentFailed);
+								}
+							}, commentExecutor)
+							.thenRunAsync(() -> {
+								if (commentFailed.get()) {
+									pageFailed.set(true);
+									return;
+								}
+								if (close) {
+									logger.info("Closing issue: " + issue.getNumber());
+									exchange(closeIssueRequest(issue.getNumber()), Void.class, failWriter, pageFailed);
+								}
+								if (!pageFailed.get()) {
+									addCompleted(checkpoint, issueKey, "");
+								}
+							}, closeExecutor)
+							.whenComplete((result, ex) -> pendingIssues.release()));
 				}
-				if (failed.get()) {
-					logger.info("Detected failure, exiting...");
-					break;
-				}
+				String endCursor = issuePage.getEndCursor();
+				previousPages = CompletableFuture.allOf(previousPages, CompletableFuture.allOf(
+						futures.toArray(new CompletableFuture<?>[0]))).thenRun(() -> {
+							if (pageFailed.get()) {
+								earlierPageFailed.set(true);
+							}
+							if (!earlierPageFailed.get() && endCursor != null) {
+								addCompleted(checkpoint, CURSOR_KEY, endCursor);
+							}
+						});
 				page++;
 			}
+			previousPages.join();
+			if (commentFailed.get()) {
+				logger.info("Detected failure, exiting...");
+			}
+			else {
+				logger.info("Done, exiting..");
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while closing issues", ex);
+		}
+		finally {
+			commentExecutor.shutdownNow();
+			closeExecutor.shutdownNow();
 		}
 	}
 
-	private static RequestEntity<Void> issuesPageRequest(UriComponentsBuilder uricBuilder, int page) {
-		return RequestEntity.get(uricBuilder.build(String.valueOf(page)))
-				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
-				.build();
-	}
-
-	private static RequestEntity<Void> getCommentsRequest(Integer ghIssueId) {
-		return RequestEntity.get(commentsUricBuilder.expand(ghIssueId).toUri())
-				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
-				.build();
+	private static void addCompleted(ProgressCheckpoint checkpoint, String key, String value) {
+		try {
+			checkpoint.addCompleted(key, value);
+		}
+		catch (IOException ex) {
+			logger.error("Failed to record progress for " + key + ": " + ex.getMessage());
+		}
 	}
 
 	private static RequestEntity<Map<String, String>> addCommentRequest(Integer ghIssueId) {
@@ -131,11 +180,11 @@ public class BulkIssueClosingApp extends GitHubBaseApp {
 				.body(Collections.singletonMap("state", "closed"));
 	}
 
-	private static boolean needsComment(List<Map<String, Object>> comments) {
+	private static boolean needsComment(List<GitHubGraphQlReader.Comment> comments) {
 		if (CollectionUtils.isEmpty(comments)) {
 			return true;
 		}
-		String lastComment = (String) comments.get(comments.size() - 1).get("body");
+		String lastComment = comments.get(comments.size() - 1).getBody();
 		return !lastComment.contains(COMMENT_BODY);
 	}
 
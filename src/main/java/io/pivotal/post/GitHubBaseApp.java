@@ -17,20 +17,22 @@ package io.pivotal.post;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import io.pivotal.github.GitHubRestTemplate;
+import io.pivotal.github.GitHubCredentialPool;
+import io.pivotal.github.GitHubWebClient;
 import io.pivotal.pre.BaseApp;
-import io.pivotal.util.RateLimitHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -52,17 +54,37 @@ public class GitHubBaseApp extends BaseApp {
 	protected static final MediaType APPLICATION_GH_RAW_JSON = new MediaType("application", "vnd.github.3.raw+json");
 
 
-	protected static final RestTemplate rest = new GitHubRestTemplate(new RateLimitHelper(), logger);
-
 	protected static final String jiraBaseUrl = props.getProperty("jira.base-url");
 
 	protected static final String repositorySlug = props.getProperty("github.repository-slug");
 
 	protected static final String accessToken = props.getProperty("github.access-token");
 
+	protected static final String apiUrl = props.getProperty("github.api-url", "https://api.github.com");
+
+	/** Tokens to spread reads across, in addition to the access token. */
+	private static final List<String> readAccessTokens =
+			Arrays.asList(props.getProperty("github.read-access-tokens", "").split(","));
+
+	protected static final GitHubWebClient webClient =
+			new GitHubWebClient(apiUrl, new GitHubCredentialPool(accessToken, readAccessTokens));
+
+	/**
+	 * Whether to run per-issue work on virtual threads, see
+	 * {@link io.pivotal.util.TaskExecutors}.
+	 */
+	protected static final boolean virtualThreads =
+			Boolean.parseBoolean(props.getProperty("github.virtual-threads", "false"));
+
+	/**
+	 * Limit on requests in flight across all threads, which matters with
+	 * virtual threads, so they wait here rather than for a pooled connection.
+	 */
+	private static final Semaphore requestPermits = new Semaphore(GitHubWebClient.DEFAULT_MAX_CONNECTIONS);
+
 
 	protected static UriComponents issuesUric = UriComponentsBuilder
-			.fromUriString("https://api.github.com/repos/" + repositorySlug + "/issues").encode().build();
+			.fromUriString(apiUrl + "/repos/" + repositorySlug + "/issues").encode().build();
 
 	protected static UriComponents issueUric = UriComponentsBuilder.newInstance()
 			.uriComponents(issuesUric).path("/{issueId}").encode().build();
@@ -84,10 +106,31 @@ public class GitHubBaseApp extends BaseApp {
 	protected static <T> T exchange(RequestEntity<?> requestEntity, ParameterizedTypeReference<T> responseType,
 			FileWriter writer, AtomicBoolean failed) {
 
+		ResponseEntity<T> responseEntity = exchangeForEntity(requestEntity, responseType, writer, failed);
+		return (responseEntity != null ? responseEntity.getBody() : null);
+	}
+
+	/**
+	 * Variant of {@link #exchange(RequestEntity, ParameterizedTypeReference, FileWriter, AtomicBoolean)}
+	 * that returns the full response, e.g. to check for a 304 response to a
+	 * conditional request, or to get response headers.
+	 */
+	protected static <T> ResponseEntity<T> exchangeForEntity(RequestEntity<?> requestEntity,
+			ParameterizedTypeReference<T> responseType, FileWriter writer, AtomicBoolean failed) {
+
 		try {
-			return rest.exchange(requestEntity, responseType).getBody();
+			requestPermits.acquire();
+			try {
+				return webClient.exchange(requestEntity, responseType).block();
+			}
+			finally {
+				requestPermits.release();
+			}
 		}
 		catch (Throwable ex) {
+			if (ex instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
 			if (failed != null) {
 				failed.set(true);
 			}
@@ -104,4 +147,14 @@ public class GitHubBaseApp extends BaseApp {
 	}
 
 
+	/**
+	 * Create a reader for issues with their comments, a page of
+	 * "github.graphql-page-size" issues (default 50) per GraphQL query.
+	 */
+	protected static GitHubGraphQlReader initGraphQlReader() {
+		int pageSize = Integer.parseInt(props.getProperty("github.graphql-page-size",
+				String.valueOf(GitHubGraphQlReader.DEFAULT_PAGE_SIZE)));
+		return new GitHubGraphQlReader(webClient, apiUrl + "/graphql", accessToken, repositorySlug, pageSize);
+	}
+
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.post;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.pivotal.github.GitHubWebClient;
+import lombok.Data;
+
+import org.springframework.http.RequestEntity;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Reads issues of a repository with their comments through the GitHub
+ * GraphQL API, a page of issues per request, as opposed to a request for
+ * each issue and another for its comments through the REST API. Issues with
+ * more comments than fit in the first request have the rest read with
+ * further requests for each such issue.
+ *
+ * @see <a href="https://docs.github.com/en/graphql/guides/using-pagination-in-the-graphql-api">Using pagination in the GraphQL API</a>
+ */
+class GitHubGraphQlReader {
+
+	/** Issues per page, up to 100, the maximum GitHub allows. */
+	static final int DEFAULT_PAGE_SIZE = 50;
+
+	private static final int COMMENTS_PAGE_SIZE = 100;
+
+	private static final String COMMENTS_FIELDS =
+			"pageInfo { hasNextPage endCursor } nodes { fullDatabaseId body }";
+
+	private static final String ISSUES_QUERY =
+			"query($owner: String!, $name: String!, $pageSize: Int!, $cursor: String, $labels: [String!]) {" +
+			" repository(owner: $owner, name: $name) {" +
+			" issues(first: $pageSize, after: $cursor, labels: $labels, orderBy: {field: CREATED_AT, direction: ASC}) {" +
+			" pageInfo { hasNextPage endCursor }" +
+			" nodes { id number state body comments(first: " + COMMENTS_PAGE_SIZE + ") { " + COMMENTS_FIELDS + " } }" +
+			" } } }";
+
+	private static final String COMMENTS_QUERY =
+			"query($id: ID!, $cursor: String) {" +
+			" node(id: $id) { ... on Issue {" +
+			" comments(first: " + COMMENTS_PAGE_SIZE + ", after: $cursor) { " + COMMENTS_FIELDS + " }" +
+			" } } }";
+
+
+	private final GitHubWebClient webClient;
+
+	private final URI endpoint;
+
+	private final String accessToken;
+
+	private final String owner;
+
+	private final String name;
+
+	private final int pageSize;
+
+
+	/**
+	 * Create an instance.
+	 * @param webClient the client to send queries with
+	 * @param endpoint the GraphQL endpoint, e.g. "https://api.github.com/graphql"
+	 * @param accessToken the token to authorize with
+	 * @param repositorySlug the repository to read from, e.g. "spring-projects/spring-framework"
+	 * @param pageSize the number of issues to read per request, up to 100
+	 */
+	GitHubGraphQlReader(GitHubWebClient webClient, String endpoint, String accessToken,
+			String repositorySlug, int pageSize) {
+		Assert.isTrue(pageSize > 0 && pageSize <= 100, "Page size must be between 1 and 100");
+		String[] slug = repositorySlug.split("/");
+		Assert.isTrue(slug.length == 2, "Expected repository slug \"owner/name\": " + repositorySlug);
+		this.webClient = webClient;
+		this.endpoint = URI.create(endpoint);
+		this.accessToken = accessToken;
+		this.owner = slug[0];
+		this.name = slug[1];
+		this.pageSize = pageSize;
+	}
+
+
+	/**
+	 * Read a page of issues with all of their comments.
+	 * @param labels labels to filter issues by, or {@code null} for all issues
+	 * @param cursor the {@link IssuePage#getNextCursor() cursor} from the
+	 * previous page, or {@code null} for the first page
+	 */
+	public IssuePage readIssuePage(List<String> labels, String cursor) {
+		Map<String, Object> variables = new HashMap<>();
+		variables.put("owner", this.owner);
+		variables.put("name", this.name);
+		variables.put("pageSize", this.pageSize);
+		variables.put("cursor", cursor);
+		variables.put("labels", (CollectionUtils.isEmpty(labels) ? null : labels));
+
+		Connection<Issue> issues = query(ISSUES_QUERY, variables).getRepository().getIssues();
+		for (Issue issue : issues.getNodes()) {
+			Connection<Comment> comments = issue.getComments();
+			while (comments.getPageInfo().isHasNextPage()) {
+				Map<String, Object> commentVariables = new HashMap<>();
+				commentVariables.put("id", issue.getId());
+				commentVariables.put("cursor", comments.getPageInfo().getEndCursor());
+				Connection<Comment> nextComments = query(COMMENTS_QUERY, commentVariables).getNode().getComments();
+				comments.getNodes().addAll(nextComments.getNodes());
+				comments.setPageInfo(nextComments.getPageInfo());
+			}
+		}
+
+		PageInfo pageInfo = issues.getPageInfo();
+		return new IssuePage(issues.getNodes(), pageInfo.getEndCursor(), pageInfo.isHasNextPage());
+	}
+
+	private ResponseData query(String query, Map<String, Object> variables) {
+		Map<String, Object> body = new HashMap<>();
+		body.put("query", query);
+		body.put("variables", variables);
+		RequestEntity<Map<String, Object>> request = RequestEntity.post(this.endpoint)
+				.header("Authorization", "bearer " + this.accessToken)
+				.body(body);
+		Response response = this.webClient.exchange(request, Response.class).block().getBody();
+		Assert.state(response != null, "No GraphQL response");
+		if (!CollectionUtils.isEmpty(response.getErrors())) {
+			throw new IllegalStateException("GraphQL query failed: " + response.getErrors());
+		}
+		Assert.state(response.getData() != null, "No data in GraphQL response");
+		return response.getData();
+	}
+
+
+	/**
+	 * A page of issues, and the cursor to the next page.
+	 */
+	public static class IssuePage {
+
+		private final List<Issue> issues;
+
+		private final String endCursor;
+
+		private final boolean hasNextPage;
+
+
+		IssuePage(List<Issue> issues, String endCursor, boolean hasNextPage) {
+			this.issues = issues;
+			this.endCursor = endCursor;
+			this.hasNextPage = hasNextPage;
+		}
+
+
+		public List<Issue> getIssues() {
+			return this.issues;
+		}
+
+		/**
+		 * Return the cursor to the end of this page, from which to read further
+		 * pages, possibly later, or {@code null} if the page is empty.
+		 */
+		public String getEndCursor() {
+			return this.endCursor;
+		}
+
+		/**
+		 * Return the cursor to the next page, or {@code null} if this is the last page.
+		 */
+		public String getNextCursor() {
+			return (this.hasNextPage ? this.endCursor : null);
+		}
+	}
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class Issue {
+		String id;
+		int number;
+		String state;
+		String body;
+		Connection<Comment> comments;
+	}
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class Comment {
+		/** The REST id, read from "fullDatabaseId", a BigInt string, as "databaseId" is a 32-bit Int. */
+		@JsonProperty("fullDatabaseId")
+		long databaseId;
+		String body;
+	}
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	static class Connection<T> {
+		PageInfo pageInfo;
+		List<T> nodes = new ArrayList<>();
+	}
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	static class PageInfo {
+		boolean hasNextPage;
+		String endCursor;
+	}
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	static class Response {
+		ResponseData data;
+		List<Map<String, Object>> errors;
+	}
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	static class ResponseData {
+		Repository repository;
+		Issue node;
+	}
+
+	@Data
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	static class Repository {
+		Connection<Issue> issues;
+	}
+
+}
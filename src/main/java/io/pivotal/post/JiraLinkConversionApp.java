@@ -18,68 +18,129 @@ package io.pivotal.post;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
+import io.pivotal.util.IssueMappingIndex;
 import io.pivotal.util.ProgressTracker;
+import io.pivotal.util.TaskExecutors;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 
 import static org.hamcrest.text.IsEqualCompressingWhiteSpace.equalToCompressingWhiteSpace;
 
 /**
+ * App to replace links to Jira issues with references to the GitHub issues
+ * they were migrated to, in the description and comments of each issue.
+ *
+ * <p>Issues are processed in a pipeline. By default, issues are read with
+ * their comments through GraphQL queries, a page of issues at a time. If
+ * "github.graphql-reads" is set to false, each issue and its comments are
+ * read through the REST API instead, with "github.read-concurrency"
+ * concurrent requests (default 8), or with a virtual thread per issue if
+ * "github.virtual-threads" is set on Java 21. Links are converted on a pool
+ * sized to the number of processors, and updates are sent from a single
+ * thread, paced by the {@link io.pivotal.util.RateLimitHelper} limit for
+ * content modifying requests.
+ *
+ * <p>Progress is recorded in a checkpoint file, so that a re-run only does
+ * work for what changed. For each description and comment, a fingerprint
+ * of the content and of the issue mappings avoids parsing it again. For
+ * REST reads, the ETags of each issue and of its comments are used for
+ * conditional requests, which cost no rate limit budget when they return
+ * 304. Both are invalidated when the issue mappings change.
+ *
+ * <p>Text that does not mention a key of the Jira project is not parsed.
+ *
  * @author Rossen Stoyanchev
  */
 public class JiraLinkConversionApp extends GitHubBaseApp {
 
+	/** Limit on issues read ahead of the updates, to bound memory use. */
+	private static final int MAX_PENDING_ISSUES = 200;
+
 
 	public static void main(String[] args) throws IOException {
 
 		File mappingsFile = new File("github-issue-mappings.properties");
-		Map<String, Integer> issueMappings = loadIssueMappings(mappingsFile);
+		IssueMappingIndex issueMappings = loadIssueMappings(mappingsFile);
+		int readConcurrency = Integer.parseInt(props.getProperty("github.read-concurrency", "8"));
+		boolean graphQlReads = Boolean.parseBoolean(props.getProperty("github.graphql-reads", "true"));
 
 		File failuresFile = new File("jira-link-conversion-failures.txt");
-		try (FileWriter failWriter = new FileWriter(failuresFile, true)) {
+		File checkpointFile = new File("jira-link-conversion-progress.txt");
+		try (FileWriter failWriter = new FileWriter(failuresFile, true);
+			 ProgressCheckpoint checkpoint = new ProgressCheckpoint(checkpointFile)) {
 
 			String projectId = initJiraConfig().getProjectId();
 			JiraLinkConverter converter = new JiraLinkConverter(jiraBaseUrl, projectId, issueMappings, failWriter);
+			String mappingsHash = Long.toHexString(issueMappings.contentHash());
 
-			ProgressTracker tracker = new ProgressTracker(issueMappings.size(), 4, 200, logger.isDebugEnabled());
-			issueMappings.forEach((jiraKey, ghIssueId) -> {
-				tracker.updateForIteration();
+			Map<Integer, IssueUpdate> updates = new LinkedHashMap<>(issueMappings.size() * 2);
+			issueMappings.forEach((jiraKey, ghIssueId) -> updates.put(ghIssueId,
+					new IssueUpdate(jiraKey, ghIssueId, mappingsHash, checkpoint, failWriter)));
+			logger.info("Converting links in {} issues ({} checked previously)",
+					updates.size(), checkpoint.getCompletedCount());
 
-				Map<String, Object> map = exchange(getIssueRequest(ghIssueId), MAP_TYPE, failWriter, null);
-				if (map != null) {
-					String descBefore = (String) map.get("body");
-					String descAfter = converter.convert(descBefore);
-					if (!equalToCompressingWhiteSpace(descBefore).matches(descAfter)) {
-						exchange(patchIssueRequest(ghIssueId, descAfter), Void.class, failWriter, null);
+			ProgressTracker tracker = new ProgressTracker(updates.size(), 4, 200, logger.isDebugEnabled());
+			try (Pipeline pipeline = new Pipeline(readConcurrency, converter, tracker)) {
+				if (graphQlReads) {
+					GitHubGraphQlReader reader = initGraphQlReader();
+					String cursor = null;
+					do {
+						GitHubGraphQlReader.IssuePage page = reader.readIssuePage(null, cursor);
+						for (GitHubGraphQlReader.Issue issue : page.getIssues()) {
+							IssueUpdate update = updates.remove(issue.getNumber());
+							if (update != null) {
+								update.setContent(issue);
+								pipeline.submit(update);
+							}
+						}
+						cursor = page.getNextCursor();
 					}
+					while (cursor != null);
+					for (IssueUpdate update : updates.values()) {
+						failWriter.write("No issue #" + update.ghIssueId + " for " + update.jiraKey + "\n");
+					}
+					failWriter.flush();
 				}
-
-				List<Map<String, Object>> body = exchange(getCommentsRequest(ghIssueId), LIST_OF_MAPS_TYPE, failWriter, null);
-				if (body != null) {
-					body.forEach(commentMap -> {
-						Integer commentId = (Integer) commentMap.get("id");
-						String commentBefore = (String) commentMap.get("body");
-						String commentAfter = converter.convert(commentBefore);
-						if (!equalToCompressingWhiteSpace(commentBefore).matches(commentAfter)) {
-							exchange(patchCommentRequest(commentId, commentAfter), Void.class, failWriter, null);
-						}
-					});
+				else {
+					for (IssueUpdate update : updates.values()) {
+						pipeline.submit(update);
+					}
 				}
-			});
+				pipeline.awaitCompletion();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while converting links", ex);
+			}
 			tracker.stopProgress();
 		}
 	}
 
 
-	private static RequestEntity<Void> getIssueRequest(Integer ghIssueId) {
-		return RequestEntity.get(issueUric.expand(ghIssueId).toUri())
+	private static RequestEntity<Void> getIssueRequest(Integer ghIssueId, String etag) {
+		RequestEntity.HeadersBuilder<?> builder = RequestEntity.get(issueUric.expand(ghIssueId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
-				.build();
+				.header("Authorization", "token " + accessToken);
+		if (etag != null) {
+			builder.ifNoneMatch(etag);
+		}
+		return builder.build();
 	}
 
 	private static RequestEntity<Map<?, ?>> patchIssueRequest(Integer ghIssueId, String body) {
@@ -89,18 +150,278 @@ public class JiraLinkConversionApp extends GitHubBaseApp {
 				.body(Collections.singletonMap("body", body));
 	}
 
-	private static RequestEntity<Void> getCommentsRequest(Integer ghIssueId) {
-		return RequestEntity.get(commentsUricBuilder.expand(ghIssueId).toUri())
+	private static RequestEntity<Void> getCommentsRequest(Integer ghIssueId, String etag) {
+		RequestEntity.HeadersBuilder<?> builder = RequestEntity.get(commentsUricBuilder.expand(ghIssueId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
-				.header("Authorization", "token " + accessToken)
-				.build();
+				.header("Authorization", "token " + accessToken);
+		if (etag != null) {
+			builder.ifNoneMatch(etag);
+		}
+		return builder.build();
 	}
 
-	private static RequestEntity<Map<?, ?>> patchCommentRequest(Integer commentId, String body) {
+	private static RequestEntity<Map<?, ?>> patchCommentRequest(Long commentId, String body) {
 		return RequestEntity.patch(commentUricBuilder.expand(commentId).toUri())
 				.accept(APPLICATION_GH_RAW_JSON)
 				.header("Authorization", "token " + accessToken)
 				.body(Collections.singletonMap("body", body));
 	}
 
+
+	/**
+	 * Reads, converts, and updates issues, with a pool of threads for each
+	 * step, except for updates, which are sent one at a time.
+	 */
+	private static class Pipeline implements AutoCloseable {
+
+		private final ExecutorService readExecutor;
+
+		private final ExecutorService convertExecutor =
+				Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+		private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+		private final Semaphore pendingIssues = new Semaphore(MAX_PENDING_ISSUES);
+
+		private final JiraLinkConverter converter;
+
+		private final ProgressTracker tracker;
+
+
+		Pipeline(int readConcurrency, JiraLinkConverter converter, ProgressTracker tracker) {
+			this.readExecutor = TaskExecutors.newBlockingTaskExecutor(readConcurrency, virtualThreads);
+			this.converter = converter;
+			this.tracker = tracker;
+		}
+
+
+		void submit(IssueUpdate update) throws InterruptedException {
+			this.pendingIssues.acquire();
+			CompletableFuture.runAsync(update::read, this.readExecutor)
+					.thenRunAsync(() -> update.convert(this.converter), this.convertExecutor)
+					.thenRunAsync(update::write, this.writeExecutor)
+					.whenComplete((result, ex) -> {
+						if (ex != null) {
+							logger.error("Failed to update " + update.jiraKey, ex);
+						}
+						synchronized (this.tracker) {
+							this.tracker.updateForIteration();
+						}
+						this.pendingIssues.release();
+					});
+		}
+
+		void awaitCompletion() throws InterruptedException {
+			this.pendingIssues.acquire(MAX_PENDING_ISSUES);
+			this.pendingIssues.release(MAX_PENDING_ISSUES);
+		}
+
+		@Override
+		public void close() {
+			this.readExecutor.shutdownNow();
+			this.convertExecutor.shutdownNow();
+			this.writeExecutor.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * The state of one issue as it moves through the pipeline.
+	 */
+	private static class IssueUpdate {
+
+		private static final String NO_ETAG = "-";
+
+
+		private final String jiraKey;
+
+		private final int ghIssueId;
+
+		private final String mappingsHash;
+
+		private final ProgressCheckpoint checkpoint;
+
+		private final FileWriter failWriter;
+
+		private final AtomicBoolean failed = new AtomicBoolean();
+
+		private String issueEtag;
+
+		private String commentsEtag;
+
+		private boolean contentSet;
+
+		private String body;
+
+		private Map<Long, String> comments = Collections.emptyMap();
+
+		private final List<TextUpdate> textUpdates = new ArrayList<>();
+
+
+		IssueUpdate(String jiraKey, int ghIssueId, String mappingsHash,
+				ProgressCheckpoint checkpoint, FileWriter failWriter) {
+
+			this.jiraKey = jiraKey;
+			this.ghIssueId = ghIssueId;
+			this.mappingsHash = mappingsHash;
+			this.checkpoint = checkpoint;
+			this.failWriter = failWriter;
+		}
+
+
+		/**
+		 * Set the issue content as read in bulk, in which case {@link #read()} is skipped.
+		 */
+		void setContent(GitHubGraphQlReader.Issue issue) {
+			this.body = issue.getBody();
+			this.comments = new LinkedHashMap<>();
+			for (GitHubGraphQlReader.Comment comment : issue.getComments().getNodes()) {
+				this.comments.put(comment.getDatabaseId(), comment.getBody());
+			}
+			this.contentSet = true;
+		}
+
+		void read() {
+			if (this.contentSet) {
+				return;
+			}
+			String[] previousEtags = getPreviousEtags();
+
+			ResponseEntity<Map<String, Object>> issueEntity = exchangeForEntity(
+					getIssueRequest(this.ghIssueId, previousEtags[0]), MAP_TYPE, this.failWriter, this.failed);
+			if (issueEntity != null) {
+				if (issueEntity.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+					this.issueEtag = previousEtags[0];
+				}
+				else {
+					this.issueEtag = issueEntity.getHeaders().getETag();
+					this.body = (String) issueEntity.getBody().get("body");
+				}
+			}
+
+			ResponseEntity<List<Map<String, Object>>> commentsEntity = exchangeForEntity(
+					getCommentsRequest(this.ghIssueId, previousEtags[1]), LIST_OF_MAPS_TYPE, this.failWriter, this.failed);
+			if (commentsEntity != null) {
+				if (commentsEntity.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+					this.commentsEtag = previousEtags[1];
+				}
+				else {
+					this.commentsEtag = commentsEntity.getHeaders().getETag();
+					this.comments = new LinkedHashMap<>();
+					for (Map<String, Object> commentMap : commentsEntity.getBody()) {
+						this.comments.put(((Number) commentMap.get("id")).longValue(), (String) commentMap.get("body"));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Return the issue and comments ETags from the checkpoint, or {@code null}
+		 * for each if there are none, or they were recorded for different mappings.
+		 */
+		private String[] getPreviousEtags() {
+			String value = this.checkpoint.getValue(this.jiraKey);
+			String[] parts = (value != null ? value.split(" ") : new String[0]);
+			if (parts.length != 3 || !parts[0].equals(this.mappingsHash)) {
+				return new String[2];
+			}
+			return new String[] {
+					(!parts[1].equals(NO_ETAG) ? parts[1] : null),
+					(!parts[2].equals(NO_ETAG) ? parts[2] : null)};
+		}
+
+		void convert(JiraLinkConverter converter) {
+			if (this.body != null && convertText(converter, "issue:" + this.ghIssueId, this.body,
+					text -> patchIssueRequest(this.ghIssueId, text))) {
+				// The update changes the ETag
+				this.issueEtag = null;
+			}
+			for (Map.Entry<Long, String> entry : this.comments.entrySet()) {
+				Long commentId = entry.getKey();
+				String text = entry.getValue();
+				if (text != null && convertText(converter, "comment:" + commentId, text,
+						convertedText -> patchCommentRequest(commentId, convertedText))) {
+					this.commentsEtag = null;
+				}
+			}
+			this.body = null;
+			this.comments = Collections.emptyMap();
+		}
+
+		/**
+		 * Convert the text unless its fingerprint shows it was checked before,
+		 * and return whether an update is needed.
+		 */
+		private boolean convertText(JiraLinkConverter converter, String checkpointKey, String text,
+				Function<String, RequestEntity<?>> requestFactory) {
+
+			String fingerprint = fingerprint(text);
+			if (fingerprint.equals(this.checkpoint.getValue(checkpointKey))) {
+				return false;
+			}
+			String convertedText = converter.convert(text);
+			if (equalToCompressingWhiteSpace(text).matches(convertedText)) {
+				this.textUpdates.add(new TextUpdate(checkpointKey, fingerprint, null));
+				return false;
+			}
+			this.textUpdates.add(new TextUpdate(
+					checkpointKey, fingerprint(convertedText), requestFactory.apply(convertedText)));
+			return true;
+		}
+
+		private String fingerprint(String text) {
+			return DigestUtils.md5DigestAsHex((this.mappingsHash + "\n" + text).getBytes(StandardCharsets.UTF_8));
+		}
+
+		void write() {
+			for (TextUpdate textUpdate : this.textUpdates) {
+				if (textUpdate.request != null) {
+					AtomicBoolean requestFailed = new AtomicBoolean();
+					exchange(textUpdate.request, Void.class, this.failWriter, requestFailed);
+					if (requestFailed.get()) {
+						this.failed.set(true);
+						continue;
+					}
+				}
+				addCompleted(textUpdate.checkpointKey, textUpdate.fingerprint);
+			}
+			this.textUpdates.clear();
+			if (!this.failed.get()) {
+				addCompleted(this.jiraKey, this.mappingsHash + " " +
+						(this.issueEtag != null ? this.issueEtag : NO_ETAG) + " " +
+						(this.commentsEtag != null ? this.commentsEtag : NO_ETAG));
+			}
+		}
+
+		private void addCompleted(String key, String value) {
+			try {
+				this.checkpoint.addCompleted(key, value);
+			}
+			catch (IOException ex) {
+				logger.error("Failed to record progress for " + key + ": " + ex.getMessage());
+			}
+		}
+	}
+
+
+	/**
+	 * Update of an issue description or comment, or just the fingerprint to
+	 * record if there is no change.
+	 */
+	private static class TextUpdate {
+
+		private final String checkpointKey;
+
+		private final String fingerprint;
+
+		private final RequestEntity<?> request;
+
+
+		TextUpdate(String checkpointKey, String fingerprint, RequestEntity<?> request) {
+			this.checkpointKey = checkpointKey;
+			this.fingerprint = fingerprint;
+			this.request = request;
+		}
+	}
+
 }
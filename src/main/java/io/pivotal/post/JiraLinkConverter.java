@@ -30,6 +30,7 @@ import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.parser.block.NodePostProcessor;
 import com.vladsch.flexmark.parser.block.NodePostProcessorFactory;
 import com.vladsch.flexmark.util.NodeTracker;
+import io.pivotal.util.IssueMappingIndex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -41,9 +42,11 @@ public class JiraLinkConverter {
 	private static final Logger logger = LogManager.getLogger(JiraLinkConverter.class);
 
 
+	private final String jiraKeyPrefix;
+
 	private final Pattern rawKiraLinkPattern;
 
-	private final Map<String, Integer> issueMappings;
+	private final IssueMappingIndex issueMappings;
 
 	private final Writer failWriter;
 
@@ -55,6 +58,13 @@ public class JiraLinkConverter {
 	public JiraLinkConverter(
 			String jiraBaseUrl, String jiraProject, Map<String, Integer> issueMappings, Writer failWriter) {
 
+		this(jiraBaseUrl, jiraProject, IssueMappingIndex.from(issueMappings), failWriter);
+	}
+
+	public JiraLinkConverter(
+			String jiraBaseUrl, String jiraProject, IssueMappingIndex issueMappings, Writer failWriter) {
+
+		this.jiraKeyPrefix = jiraProject + "-";
 		this.rawKiraLinkPattern = Pattern.compile(
 				"(" + jiraBaseUrl.replace(".", "\\.") + "/browse/(" + jiraProject + "-[0-9]{1,5}+)([^?]))");
 
@@ -65,8 +75,24 @@ public class JiraLinkConverter {
 	}
 
 
+	/**
+	 * Whether the text mentions an issue key of the Jira project, without which
+	 * it can't have any links to convert.
+	 */
+	public boolean mayContainLinks(String text) {
+		return text.contains(this.jiraKeyPrefix);
+	}
+
+	/**
+	 * Replace Jira issue links with GitHub issue references. Text without
+	 * links to convert is returned as is, without being parsed.
+	 */
 	public String convert(String body) {
 
+		if (!mayContainLinks(body)) {
+			return body;
+		}
+
 		Node node = parser.parse(body);
 		body = formatter.render(node);
 
@@ -86,14 +112,13 @@ public class JiraLinkConverter {
 		return body;
 	}
 
-	private String replaceRawJiraLinks(String body, Map<String, Integer> issueMappings) throws IOException {
+	private String replaceRawJiraLinks(String body, IssueMappingIndex issueMappings) throws IOException {
 		Matcher matcher = rawKiraLinkPattern.matcher(body);
 		StringBuffer sb = new StringBuffer();
 		while (matcher.find()) {
-			String jiraKey = matcher.group(2);
-			Integer ghIssueId = issueMappings.get(jiraKey);
-			if (ghIssueId == null) {
-				failWriter.write("No mapping for " + jiraKey + "\n");
+			int ghIssueId = issueMappings.get(body, matcher.start(2), matcher.end(2));
+			if (ghIssueId == IssueMappingIndex.NO_MAPPING) {
+				failWriter.write("No mapping for " + matcher.group(2) + "\n");
 				failWriter.flush();
 				matcher.appendReplacement(sb, matcher.group(1));
 			}
@@ -112,7 +137,7 @@ public class JiraLinkConverter {
 		private JiraLinkPostProcessor processor;
 
 
-		JiraLinkPostProcessorFactory(String projectId, Map<String, Integer> issueMappings) {
+		JiraLinkPostProcessorFactory(String projectId, IssueMappingIndex issueMappings) {
 			super(false);
 			processor = new JiraLinkPostProcessor(projectId, issueMappings);
 			addNodes(Link.class);
@@ -130,10 +155,10 @@ public class JiraLinkConverter {
 
 		private final Pattern jiraKeyPattern;
 
-		private final Map<String, Integer> issueMappings;
+		private final IssueMappingIndex issueMappings;
 
 
-		JiraLinkPostProcessor(String projectId, Map<String, Integer> issueMappings) {
+		JiraLinkPostProcessor(String projectId, IssueMappingIndex issueMappings) {
 			this.jiraKeyPattern = Pattern.compile("(" + projectId + "-[0-9]{1,5}+)");
 			this.issueMappings = issueMappings;
 		}
@@ -144,8 +169,8 @@ public class JiraLinkConverter {
 				String targetText = ((Link) node).getText().toString();
 				String targetLink = ((Link) node).getUrl().toString();
 				if (jiraKeyPattern.matcher(targetText).matches() && targetLink.endsWith(targetText)) {
-					Integer ghIssueId = issueMappings.get(targetText);
-					if (ghIssueId != null) {
+					int ghIssueId = issueMappings.get(targetText);
+					if (ghIssueId != IssueMappingIndex.NO_MAPPING) {
 						Text textNode = new Text("#" + ghIssueId);
 						node.insertAfter(textNode);
 						state.nodeAdded(textNode);
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.post;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Iterates over pages of issues from a {@link GitHubGraphQlReader}, reading
+ * the next page in the background while the current one is processed.
+ * Pages are followed by cursor, so they don't shift when issues that were
+ * read are changed, e.g. closed.
+ */
+class PrefetchingIssuePaginator implements Iterator<GitHubGraphQlReader.IssuePage>, AutoCloseable {
+
+	private final GitHubGraphQlReader reader;
+
+	private final List<String> labels;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	private Future<GitHubGraphQlReader.IssuePage> nextPage;
+
+
+	/**
+	 * Create an instance and start reading the first page.
+	 * @param reader the reader to use
+	 * @param labels labels to filter issues by, or {@code null} for all issues
+	 * @param cursor the cursor to start after, or {@code null} to start from the first page
+	 */
+	PrefetchingIssuePaginator(GitHubGraphQlReader reader, List<String> labels, String cursor) {
+		this.reader = reader;
+		this.labels = labels;
+		this.nextPage = readPage(cursor);
+	}
+
+
+	@Override
+	public boolean hasNext() {
+		return (this.nextPage != null);
+	}
+
+	@Override
+	public GitHubGraphQlReader.IssuePage next() {
+		if (this.nextPage == null) {
+			throw new NoSuchElementException();
+		}
+		GitHubGraphQlReader.IssuePage page;
+		try {
+			page = this.nextPage.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading issues", ex);
+		}
+		catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new IllegalStateException("Failed to read issues", ex.getCause());
+		}
+		String cursor = page.getNextCursor();
+		this.nextPage = (cursor != null ? readPage(cursor) : null);
+		return page;
+	}
+
+	private Future<GitHubGraphQlReader.IssuePage> readPage(String cursor) {
+		return this.executor.submit(() -> this.reader.readIssuePage(this.labels, cursor));
+	}
+
+	@Override
+	public void close() {
+		this.executor.shutdownNow();
+	}
+
+}
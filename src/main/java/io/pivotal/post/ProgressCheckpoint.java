@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.post;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Record of the items a post-migration app has completed, one key per line,
+ * optionally followed by a tab and a value such as a content fingerprint,
+ * so that a re-run can skip them. Later lines take precedence over earlier
+ * ones. Each line is appended and flushed as soon as it is added, so
+ * progress survives an app that is interrupted.
+ */
+class ProgressCheckpoint implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger(ProgressCheckpoint.class);
+
+
+	private final Map<String, String> completed = new ConcurrentHashMap<>();
+
+	private final BufferedWriter writer;
+
+
+	ProgressCheckpoint(File file) throws IOException {
+		if (file.exists()) {
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int index = line.indexOf('\t');
+					if (index != -1) {
+						this.completed.put(line.substring(0, index), line.substring(index + 1));
+					}
+					else if (!line.isEmpty()) {
+						this.completed.put(line, "");
+					}
+				}
+			}
+			logger.info("Loaded {} completed items from {}", this.completed.size(), file);
+		}
+		this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+
+	public boolean isCompleted(String key) {
+		return this.completed.containsKey(key);
+	}
+
+	/**
+	 * Return the value recorded for a completed item, possibly empty, or
+	 * {@code null} if the item is not completed.
+	 */
+	public String getValue(String key) {
+		return this.completed.get(key);
+	}
+
+	public int getCompletedCount() {
+		return this.completed.size();
+	}
+
+	public void addCompleted(String key) throws IOException {
+		addCompleted(key, "");
+	}
+
+	/**
+	 * Record a completed item along with a value, replacing any previous value.
+	 */
+	public synchronized void addCompleted(String key, String value) throws IOException {
+		if (!value.equals(this.completed.put(key, value))) {
+			this.writer.write(value.isEmpty() ? key : key + "\t" + value);
+			this.writer.newLine();
+			this.writer.flush();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.writer.close();
+	}
+
+}
@@ -16,16 +16,18 @@
 package io.pivotal.pre;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Properties;
 
 import io.pivotal.jira.JiraConfig;
+import io.pivotal.util.IssueMappingIndex;
 
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 
 
 /**
@@ -53,15 +55,46 @@ public class BaseApp {
 		config.setMigrateJql(props.getProperty("jira.migrate-jql"));
 		config.setUser(props.getProperty("jira.user"));
 		config.setPassword(props.getProperty("jira.password"));
+		config.setSnapshotDirectory(props.getProperty("jira.snapshot-directory"));
+		String fetchStrategy = props.getProperty("jira.fetch-strategy");
+		if (fetchStrategy != null) {
+			config.setFetchStrategy(JiraConfig.FetchStrategy.valueOf(fetchStrategy.toUpperCase()));
+		}
+		String value = props.getProperty("jira.search-page-size");
+		if (value != null) {
+			config.setSearchPageSize(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jira.search-concurrency");
+		if (value != null) {
+			config.setSearchConcurrency(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jira.issue-request-concurrency");
+		if (value != null) {
+			config.setIssueRequestConcurrency(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jira.fetch-target-latency");
+		if (value != null) {
+			config.setFetchTargetLatency(DurationStyle.detectAndParse(value.trim()));
+		}
+		value = props.getProperty("jira.fetch-target-page-size");
+		if (value != null) {
+			config.setFetchTargetPageSize(DataSize.parse(value.trim()));
+		}
+		value = props.getProperty("jira.votes-in-search");
+		if (value != null) {
+			config.setVotesInSearch(Boolean.parseBoolean(value.trim()));
+		}
+		config.setCommitCacheFile(props.getProperty("jira.commit-cache-file"));
+		value = props.getProperty("jira.commit-lookup-resolutions");
+		if (value != null) {
+			String[] resolutions = StringUtils.commaDelimitedListToStringArray(value);
+			config.setCommitLookupResolutions(Arrays.asList(StringUtils.trimArrayElements(resolutions)));
+		}
 		return config;
 	}
 
-	protected static Map<String, Integer> loadIssueMappings(File mappingsFile) throws IOException {
-		Properties props = new Properties();
-		props.load(new FileInputStream(mappingsFile));
-		Map<String, Integer> result = new HashMap<>();
-		props.stringPropertyNames().forEach(name -> result.put(name, Integer.valueOf(props.getProperty(name))));
-		return result;
+	protected static IssueMappingIndex loadIssueMappings(File mappingsFile) throws IOException {
+		return IssueMappingIndex.load(mappingsFile);
 	}
 
 }
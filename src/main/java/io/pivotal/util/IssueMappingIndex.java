@@ -0,0 +1,382 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Mappings from Jira issue keys to GitHub issue numbers, e.g. "SPR-12345"
+ * to 21456, held in an open addressing table of {@code int} keys and values.
+ * The project prefix and the number of a Jira key are encoded in a single
+ * {@code int}, so lookups do not allocate, and can be done directly on a
+ * region of a larger {@code CharSequence}, e.g. the match of a pattern.
+ * <p>Mappings can be saved and loaded in a compact binary format. Use
+ * {@link #load(File)} to load the properties file written by the migration,
+ * via a binary copy kept next to it that's rewritten when out of date.
+ * <p>This class is not thread-safe.
+ */
+public class IssueMappingIndex {
+
+	private static final Logger logger = LogManager.getLogger(IssueMappingIndex.class);
+
+	/** Returned from lookups when there is no mapping. */
+	public static final int NO_MAPPING = -1;
+
+	private static final int MAGIC = 0x4A474D31; // "JGM1"
+
+	private static final int NUMBER_BITS = 24;
+
+	private static final int MAX_NUMBER = (1 << NUMBER_BITS) - 1;
+
+	private static final int MAX_PREFIXES = 1 << (31 - NUMBER_BITS);
+
+	private static final int EMPTY = -1;
+
+
+	private String[] prefixes = new String[0];
+
+	private int[] keys;
+
+	private int[] values;
+
+	private int size;
+
+
+	public IssueMappingIndex() {
+		this(16);
+	}
+
+	public IssueMappingIndex(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+
+
+	public static IssueMappingIndex from(Map<String, Integer> mappings) {
+		IssueMappingIndex index = new IssueMappingIndex(mappings.size());
+		mappings.forEach(index::put);
+		return index;
+	}
+
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return (this.size == 0);
+	}
+
+	/**
+	 * Add or replace a mapping.
+	 * @param jiraKey the Jira issue key, e.g. "SPR-12345"
+	 * @param issueNumber the GitHub issue number
+	 * @throws IllegalArgumentException if the key is not a Jira issue key,
+	 * or the issue number is negative
+	 */
+	public void put(String jiraKey, int issueNumber) {
+		if (issueNumber < 0) {
+			throw new IllegalArgumentException("Invalid issue number " + issueNumber + " for " + jiraKey);
+		}
+		int dash = jiraKey.lastIndexOf('-');
+		int number = (dash > 0 ? parseNumber(jiraKey, dash + 1, jiraKey.length()) : -1);
+		if (number < 0) {
+			throw new IllegalArgumentException("Not a Jira issue key: \"" + jiraKey + "\"");
+		}
+		int prefixIndex = findPrefix(jiraKey, 0, dash);
+		if (prefixIndex == -1) {
+			if (this.prefixes.length == MAX_PREFIXES) {
+				throw new IllegalStateException("Too many project prefixes: " + Arrays.toString(this.prefixes));
+			}
+			this.prefixes = Arrays.copyOf(this.prefixes, this.prefixes.length + 1);
+			prefixIndex = this.prefixes.length - 1;
+			this.prefixes[prefixIndex] = jiraKey.substring(0, dash);
+		}
+		putKey(encode(prefixIndex, number), issueNumber);
+	}
+
+	/**
+	 * Return the GitHub issue number for the Jira key, or {@link #NO_MAPPING}.
+	 */
+	public int get(CharSequence jiraKey) {
+		return get(jiraKey, 0, jiraKey.length());
+	}
+
+	/**
+	 * Variant of {@link #get(CharSequence)} for a Jira key at the given
+	 * region of a larger sequence, e.g. the group of a regex match.
+	 */
+	public int get(CharSequence text, int start, int end) {
+		int dash = -1;
+		for (int i = end - 1; i > start; i--) {
+			if (text.charAt(i) == '-') {
+				dash = i;
+				break;
+			}
+		}
+		if (dash == -1) {
+			return NO_MAPPING;
+		}
+		int number = parseNumber(text, dash + 1, end);
+		int prefixIndex = (number >= 0 ? findPrefix(text, start, dash) : -1);
+		if (prefixIndex == -1) {
+			return NO_MAPPING;
+		}
+		int key = encode(prefixIndex, number);
+		int mask = this.keys.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			if (this.keys[slot] == key) {
+				return this.values[slot];
+			}
+			if (this.keys[slot] == EMPTY) {
+				return NO_MAPPING;
+			}
+		}
+	}
+
+	public boolean containsKey(CharSequence jiraKey) {
+		return (get(jiraKey) != NO_MAPPING);
+	}
+
+	public void clear() {
+		Arrays.fill(this.keys, EMPTY);
+		this.size = 0;
+	}
+
+	public void putAll(IssueMappingIndex other) {
+		other.forEach(this::put);
+	}
+
+	/**
+	 * Iterate over mappings, in no particular order.
+	 */
+	public void forEach(ObjIntConsumer<String> consumer) {
+		for (int slot = 0; slot < this.keys.length; slot++) {
+			int key = this.keys[slot];
+			if (key != EMPTY) {
+				consumer.accept(this.prefixes[key >>> NUMBER_BITS] + "-" + (key & MAX_NUMBER), this.values[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Return a hash of the mappings that does not depend on the order in which
+	 * they were added, e.g. to detect a change in the mappings between runs.
+	 */
+	public long contentHash() {
+		long hash = this.size;
+		for (int slot = 0; slot < this.keys.length; slot++) {
+			int key = this.keys[slot];
+			if (key != EMPTY) {
+				int keyHash = 31 * this.prefixes[key >>> NUMBER_BITS].hashCode() + (key & MAX_NUMBER);
+				hash += mix(((long) keyHash << 32) | (this.values[slot] & 0xFFFFFFFFL));
+			}
+		}
+		return hash;
+	}
+
+	private static long mix(long value) {
+		value ^= (value >>> 33);
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= (value >>> 33);
+		value *= 0xC4CEB9FE1A85EC53L;
+		return value ^ (value >>> 33);
+	}
+
+	private void putKey(int key, int value) {
+		int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+		while (this.keys[slot] != EMPTY) {
+			if (this.keys[slot] == key) {
+				this.values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		this.size++;
+		if (this.size * 2 > this.keys.length) {
+			rehash(this.keys.length * 2);
+		}
+	}
+
+	private void rehash(int tableSize) {
+		int[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		allocate(tableSize);
+		this.size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				putKey(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private void allocate(int tableSize) {
+		this.keys = new int[tableSize];
+		this.values = new int[tableSize];
+		Arrays.fill(this.keys, EMPTY);
+	}
+
+	private int findPrefix(CharSequence text, int start, int end) {
+		int length = end - start;
+		for (int i = 0; i < this.prefixes.length; i++) {
+			String prefix = this.prefixes[i];
+			if (prefix.length() == length && regionMatches(prefix, text, start)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean regionMatches(String prefix, CharSequence text, int start) {
+		for (int i = 0; i < prefix.length(); i++) {
+			if (prefix.charAt(i) != text.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parse a positive number within the supported range, or return -1.
+	 */
+	private static int parseNumber(CharSequence text, int start, int end) {
+		if (start >= end || end - start > 8) {
+			return -1;
+		}
+		int number = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			number = number * 10 + (c - '0');
+		}
+		return (number <= MAX_NUMBER ? number : -1);
+	}
+
+	private static int encode(int prefixIndex, int number) {
+		return (prefixIndex << NUMBER_BITS) | number;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		int tableSize = 16;
+		while (tableSize < expectedSize * 2) {
+			tableSize <<= 1;
+		}
+		return tableSize;
+	}
+
+
+	/**
+	 * Save the mappings in binary format.
+	 */
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(this.prefixes.length);
+			for (String prefix : this.prefixes) {
+				out.writeUTF(prefix);
+			}
+			out.writeInt(this.size);
+			for (int slot = 0; slot < this.keys.length; slot++) {
+				if (this.keys[slot] != EMPTY) {
+					out.writeInt(this.keys[slot]);
+					out.writeInt(this.values[slot]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Load mappings saved with {@link #write(File)}.
+	 */
+	public static IssueMappingIndex read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not an issue mapping index: " + file);
+			}
+			String[] prefixes = new String[in.readInt()];
+			for (int i = 0; i < prefixes.length; i++) {
+				prefixes[i] = in.readUTF();
+			}
+			int size = in.readInt();
+			IssueMappingIndex index = new IssueMappingIndex(size);
+			index.prefixes = prefixes;
+			for (int i = 0; i < size; i++) {
+				index.putKey(in.readInt(), in.readInt());
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Load the mappings in a properties file of Jira keys and GitHub issue
+	 * numbers, as written by the migration, from a binary copy next to it,
+	 * e.g. "github-issue-mappings.properties.bin", if that's up to date, or
+	 * otherwise from the properties file, saving the binary copy for next time.
+	 */
+	public static IssueMappingIndex load(File propertiesFile) throws IOException {
+		File binaryFile = new File(propertiesFile.getPath() + ".bin");
+		if (binaryFile.exists() && binaryFile.lastModified() > propertiesFile.lastModified()) {
+			try {
+				return read(binaryFile);
+			}
+			catch (IOException ex) {
+				logger.warn("Failed to read {}, loading {} instead: {}", binaryFile, propertiesFile, ex.getMessage());
+			}
+		}
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(propertiesFile)) {
+			properties.load(in);
+		}
+		IssueMappingIndex index = new IssueMappingIndex(properties.size());
+		properties.stringPropertyNames().forEach(key -> index.put(key, Integer.parseInt(properties.getProperty(key))));
+		File tempFile = new File(binaryFile.getPath() + ".tmp");
+		try {
+			index.write(tempFile);
+			Files.move(tempFile.toPath(), binaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException ex) {
+			logger.warn("Failed to save {}: {}", binaryFile, ex.getMessage());
+		}
+		return index;
+	}
+
+}
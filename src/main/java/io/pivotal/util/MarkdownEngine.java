@@ -16,10 +16,10 @@
 package io.pivotal.util;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -44,10 +44,13 @@ import com.vladsch.flexmark.parser.block.NodePostProcessor;
 import com.vladsch.flexmark.parser.block.NodePostProcessorFactory;
 import com.vladsch.flexmark.util.Function;
 import com.vladsch.flexmark.util.NodeTracker;
+import com.vladsch.flexmark.util.options.DataKey;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
 import io.pivotal.jira.JiraConfig;
 import io.pivotal.jira.JiraUser;
 import lombok.Data;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -55,6 +58,12 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 /**
+ * Converts Jira wiki markup to GitHub markdown.
+ *
+ * <p>Once initialized via {@link #setJiraConfig(JiraConfig)}, an instance is
+ * safe for concurrent use: parsers and the formatter are stateless, per-document
+ * state is kept on the parsed {@link Document}, and the user lookup is concurrent.
+ *
  * @author Rob Winch
  * @author Rossen Stoyanchev
  */
@@ -62,16 +71,82 @@ import org.springframework.util.StringUtils;
 @Component
 public class MarkdownEngine implements MarkupEngine {
 
+	private static final Logger logger = LogManager.getLogger(MarkdownEngine.class);
+
+	/**
+	 * Upper bound on phase 1 passes. Each pass escapes all multi-line emphasis
+	 * found in one traversal, but doing so can expose new pairs of delimiters,
+	 * which then require another pass.
+	 */
+	static final int MAX_PHASE1_PASSES = 32;
+
 	private static final Pattern jiraUserMentionPattern = Pattern.compile("\\[~([^]]+)]");
 
-	private static final Pattern tablesPattern = Pattern.compile("(?m)^[ \\t]*(\\|\\|.*\\|\\|)[ \\t]*$");
+	private static final List<LineRewrite> listRewrites = Arrays.asList(
+			// Tasks in lists (lists handled separately below)
+			new LineRewrite("^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(x\\))", "$1[ ]"),
+			new LineRewrite("^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(/\\))", "$1[x]"),
+			new LineRewrite("^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(!\\))", "$1[ ]"),
+
+			// Ordered lists
+			// Replacing "#" and "##" disrupts a small number of code snippets, but the impact is small,
+			// Empirically in SPR most occurrences of "#" in the beginning of a line are numbered lists.
+			// If left alone, unless those are in code blocks, they would be interpreted as headings in
+			// markdown and would look even worse. It's also why we can't do this in a Flexmark Text node
+			// processor (they're seen as headings by the Flexmark parser).
+			new LineRewrite("^[ \\t]*# ",       "1. "),
+			new LineRewrite("^[ \\t]*## ",      "   1. "),
+			new LineRewrite("^[ \\t]*#- ",      "   - "),
+			new LineRewrite("^[ \\t]*#\\* ",    "   * "),
+			new LineRewrite("^[ \\t]*### ",     "      1. "),
+			new LineRewrite("^[ \\t]*#-- ",     "      - "),
+			new LineRewrite("^[ \\t]*#\\*\\* ", "      * ")
+
+			// Unordered lists:
+			// No need to convert "-" or "* " (same in Markdown)..
+			// For nested lists (e.g. "** ", "-- ", etc) we use a Flexmark Text node processor later on,
+			// in order to avoid disrupting occurrences in code blocks.
+	);
+
+	private static final Pattern headingPattern = Pattern.compile("h([1-6]). ");
+
+	private static final Pattern tablesPattern = Pattern.compile("[ \\t]*(\\|\\|.*\\|\\|)[ \\t]*");
+
+	private static final Pattern tableCellSeparatorPattern = Pattern.compile("\\|\\|");
+
+	private static final Pattern mdashPattern = Pattern.compile("[ ]{0,3}---[ \\t]*");
+
+	private static final Pattern inlineCodePattern = Pattern.compile("\\{\\{(.+?)\\}\\}");
+
+	private static final Pattern codeBlockPattern =
+			Pattern.compile("\\{(code|noformat|panel)(:(\\w+))?(?:(:|\\|)\\w+=.+?)*\\}");
+
+	private static final Pattern codeBlockStartPattern = Pattern.compile("(```\\w*) (.+)");
+
+	private static final Pattern codeBlockEndPattern = Pattern.compile("(.)(```) ");
+
+	private static final Pattern quotePattern = Pattern.compile("\\{quote\\}");
+
+	private static final Pattern singleLineQuotePattern = Pattern.compile("(?m)^[ \\t]*bq\\.");
+
+	private static final Pattern colorPattern = Pattern.compile("\\{(color)(:((#)?\\w+))?(?:(:|\\|)\\w+=.+?)*\\}");
+
+	private static final Pattern linkPattern = Pattern.compile("\\[(.+?)[ ]*\\|[ ]*(http.*?)\\]");
+
+	private static final Pattern escapedOpeningBracePattern = Pattern.compile("\\\\\\{");
+
+	private static final Pattern escapedClosingBracePattern = Pattern.compile("\\\\}");
+
+	private static final Pattern escapedTripleBracesPattern = Pattern.compile("\\\\`}");
+
+	private static final Pattern escapedBacktickPattern = Pattern.compile("\\\\`");
 
 	private static final Pattern horizontalLinesPattern = Pattern.compile("^([-]+|[=]+)$");
 
 
 	String jiraBaseUrl;
 
-	private Map<String, JiraUser> userLookup = new HashMap<>();
+	private Map<String, JiraUser> userLookup = new ConcurrentHashMap<>();
 
 	/** Escape/suppress emphasis over multiple lines, ahead of other transformations. */
 	private Parser phase1Parser;
@@ -110,39 +185,37 @@ public class MarkdownEngine implements MarkupEngine {
 			return "";
 		}
 
-		// Lists and headings (in that order!)
-		text = lists(text);
-		text = headings(text);
-		text = tables(text);
-		text = text.replaceAll("(?m)^[ ]{0,3}---[ \\t]*$", "&mdash;");
+		// Line-anchored rewrites: lists, headings, tables, and "---" (in that order!)
+		text = convertLines(text);
 
 		// Code
-		text = text.replaceAll("\\{\\{(.+?)\\}\\}", "`$1`"); // inline code
-		text = text.replaceAll("\\{(code|noformat|panel)(:(\\w+))?(?:(:|\\|)\\w+=.+?)*\\}", "```$3 ");
-		text = text.replaceAll("(```\\w*) (.+)", "$1\n$2");
-		text = text.replaceAll("(.)(```) ", "$1\n$2");
+		text = replaceAll(text, "{{", inlineCodePattern, "`$1`");
+		text = replaceAll(text, "{", codeBlockPattern, "```$3 ");
+		if (text.contains("```")) {
+			text = codeBlockStartPattern.matcher(text).replaceAll("$1\n$2");
+			text = codeBlockEndPattern.matcher(text).replaceAll("$1\n$2");
+		}
 
 		// Quotes
 		text = quoteBlocks(text);
-		text = text.replaceAll("(?m)^[ \\t]*bq\\.", "> "); // single line quotes
-		text = text.replaceAll("\\{(color)(:((#)?\\w+))?(?:(:|\\|)\\w+=.+?)*\\}", ""); // color tags
+		text = replaceAll(text, "bq.", singleLineQuotePattern, "> ");
+		text = replaceAll(text, "{color", colorPattern, "");
 
-		text = text.replaceAll("\\[(.+?)[ ]*\\|[ ]*(http.*?)\\]", "[$1]($2)"); // links
+		text = replaceAll(text, "|", linkPattern, "[$1]($2)");
 		text = replaceUserKeyWithDisplayNameInJiraUserMentions(text);
 		text = cleanupHorizontalLines(text);
 		text = convertNonCodeSections(text, s -> {
-			s = s.replaceAll("\\\\\\{", "{");	// drop escaping of "{"
-			s = s.replaceAll("\\\\}", "}");   // drop escaping of "}"
-			s = s.replaceAll("\\\\`}", "}`"); // correct situations with triple "\{{{foo}}\}"
-			s = s.replaceAll("\\\\`", "`"); // drop "\`" which originally would have been "\{{"
+			if (s.indexOf('\\') == -1) {
+				return s;
+			}
+			s = escapedOpeningBracePattern.matcher(s).replaceAll("{"); // drop escaping of "{"
+			s = escapedClosingBracePattern.matcher(s).replaceAll("}"); // drop escaping of "}"
+			s = escapedTripleBracesPattern.matcher(s).replaceAll("}`"); // correct situations with triple "\{{{foo}}\}"
+			s = escapedBacktickPattern.matcher(s).replaceAll("`"); // drop "\`" which originally would have been "\{{"
 			return s;
 		});
 
-		do {
-			Node node = phase1Parser.parse(text);
-			text = formatter.render(node);
-		}
-		while (phase1PostProcessor.keepProcessing());
+		text = escapeMultiLineEmphasis(text);
 
 		Node node = phase2Parser.parse(text);
 		visitor.visit(node);
@@ -151,72 +224,128 @@ public class MarkdownEngine implements MarkupEngine {
 		return text;
 	}
 
-	private String lists(String text) {
-
-		// Tasks in lists (lists handled separately below)
-		text = text.replaceAll("(?m)^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(x\\))", "$1[ ]");
-		text = text.replaceAll("(?m)^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(/\\))", "$1[x]");
-		text = text.replaceAll("(?m)^[ \\t]*(([#]{1,2}+|[-]{1,2}+)([-]{0,2}|[*]{0,2}) )(\\(!\\))", "$1[ ]");
-
-		// Ordered lists
-		// Replacing "#" and "##" disrupts a small number of code snippets, but the impact is small,
-		// Empirically in SPR most occurrences of "#" in the beginning of a line are numbered lists.
-		// If left alone, unless those are in code blocks, they would be interpreted as headings in
-		// markdown and would look even worse. It's also why we can't do this in a Flexmark Text node
-		// processor (they're seen as headings by the Flexmark parser).
-		text = text.replaceAll("(?m)^[ \\t]*# ",       "1. ");
-		text = text.replaceAll("(?m)^[ \\t]*## ",      "   1. ");
-		text = text.replaceAll("(?m)^[ \\t]*#- ",      "   - ");
-		text = text.replaceAll("(?m)^[ \\t]*#\\* ",    "   * ");
-		text = text.replaceAll("(?m)^[ \\t]*### ",     "      1. ");
-		text = text.replaceAll("(?m)^[ \\t]*#-- ",     "      - ");
-		text = text.replaceAll("(?m)^[ \\t]*#\\*\\* ", "      * ");
-
-		// Unordered lists:
-		// No need to convert "-" or "* " (same in Markdown)..
-		// For nested lists (e.g. "** ", "-- ", etc) we use a Flexmark Text node processor later on,
-		// in order to avoid disrupting occurrences in code blocks.
+	/**
+	 * Phase 1: escape emphasis over multiple lines, repeating only while the
+	 * previous pass escaped something, and at most {@link #MAX_PHASE1_PASSES} times.
+	 */
+	private String escapeMultiLineEmphasis(String text) {
+		for (int pass = 1; ; pass++) {
+			Document document = (Document) this.phase1Parser.parse(text);
+			text = this.formatter.render(document);
+			int modificationCount = PHASE1_MODIFICATION_COUNT.getFrom(document);
+			if (modificationCount == 0) {
+				return text;
+			}
+			if (pass == MAX_PHASE1_PASSES) {
+				logger.debug("Stopped escaping multi-line emphasis after {} passes ({} escaped in the last pass)",
+						pass, modificationCount);
+				return text;
+			}
+		}
+	}
 
-		return text;
+	/**
+	 * Apply rewrites anchored at the start of a line in a single pass over the
+	 * lines of the text. None of them cross line boundaries, so applying them
+	 * line by line is equivalent to applying each one to the whole text in turn.
+	 */
+	private static String convertLines(String text) {
+		StringBuilder sb = new StringBuilder(text.length() + 64);
+		int length = text.length();
+		int lineStart = 0;
+		while (lineStart <= length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && !isLineTerminator(text.charAt(lineEnd))) {
+				lineEnd++;
+			}
+			int next = lineEnd;
+			if (next < length) {
+				next += (text.charAt(next) == '\r' && next + 1 < length && text.charAt(next + 1) == '\n') ? 2 : 1;
+			}
+			sb.append(convertLine(text.substring(lineStart, lineEnd)));
+			sb.append(text, lineEnd, next);
+			if (next == length) {
+				break;
+			}
+			lineStart = next;
+		}
+		return sb.toString();
 	}
 
-	private String headings(String text) {
-		text = text.replaceAll("(?m)^h1. ", "# ");
-		text = text.replaceAll("(?m)^h2. ", "## ");
-		text = text.replaceAll("(?m)^h3. ", "### ");
-		text = text.replaceAll("(?m)^h4. ", "#### ");
-		text = text.replaceAll("(?m)^h5. ", "##### ");
-		text = text.replaceAll("(?m)^h6. ", "###### ");
-		return text;
+	private static boolean isLineTerminator(char c) {
+		// Same as "." and "(?m)^" in java.util.regex
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
 	}
 
-	private String tables(String text) {
-		Matcher matcher = tablesPattern.matcher(text);
-		StringBuffer sb = null;
-		while (matcher.find()) {
-			String[] headings = matcher.group(1).split("\\|\\|");
-			headings = Arrays.copyOfRange(headings, 1, headings.length);
-			String row1 = Arrays.stream(headings).map(String::trim).collect(Collectors.joining("|", "|", "|\n"));
-			String row2 = Arrays.stream(headings).map(s -> ":---").collect(Collectors.joining("|", "|", "|"));
-			sb = sb != null ? sb : new StringBuffer();
-			matcher.appendReplacement(sb, row1 + row2);
+	private static String convertLine(String line) {
+		if (line.isEmpty()) {
+			return line;
 		}
-		if (sb == null) {
-			return text;
+		int offset = 0;
+		while (offset < line.length() && (line.charAt(offset) == ' ' || line.charAt(offset) == '\t')) {
+			offset++;
 		}
-		matcher.appendTail(sb);
-		return sb.toString();
+		char first = offset < line.length() ? line.charAt(offset) : 0;
+
+		// Lists
+		if (first == '#' || first == '-') {
+			for (LineRewrite rewrite : listRewrites) {
+				line = rewrite.apply(line);
+			}
+		}
+
+		// Headings
+		if (line.startsWith("h")) {
+			Matcher matcher = headingPattern.matcher(line);
+			if (matcher.lookingAt()) {
+				int level = matcher.group(1).charAt(0) - '0';
+				line = "#".repeat(level) + " " + line.substring(matcher.end());
+			}
+		}
+
+		// Tables
+		if (first == '|') {
+			Matcher matcher = tablesPattern.matcher(line);
+			if (matcher.matches()) {
+				StringBuffer sb = new StringBuffer();
+				String[] headings = tableCellSeparatorPattern.split(matcher.group(1));
+				headings = Arrays.copyOfRange(headings, 1, headings.length);
+				String row1 = Arrays.stream(headings).map(String::trim).collect(Collectors.joining("|", "|", "|\n"));
+				String row2 = Arrays.stream(headings).map(s -> ":---").collect(Collectors.joining("|", "|", "|"));
+				matcher.appendReplacement(sb, row1 + row2);
+				return sb.toString();
+			}
+		}
+
+		if (line.contains("---") && mdashPattern.matcher(line).matches()) {
+			return "&mdash;";
+		}
+
+		return line;
+	}
+
+	/**
+	 * Apply a pattern only if the text contains a literal that any match requires.
+	 */
+	private static String replaceAll(String text, String requiredLiteral, Pattern pattern, String replacement) {
+		return text.contains(requiredLiteral) ? pattern.matcher(text).replaceAll(replacement) : text;
 	}
 
 	private static String quoteBlocks(String str) {
-		String[] parts = str.split("\\{quote\\}");
+		if (!str.contains("{quote}")) {
+			return str;
+		}
+		String[] parts = quotePattern.split(str);
 		for (int i = 1; i < parts.length; i += 2) {
-			parts[i] = "\n > " + parts[i].replaceAll("\n", "\n> ");
+			parts[i] = "\n > " + parts[i].replace("\n", "\n> ");
 		}
 		return StringUtils.arrayToDelimitedString(parts, "");
 	}
 
 	private String replaceUserKeyWithDisplayNameInJiraUserMentions(String text) {
+		if (!text.contains("[~")) {
+			return text;
+		}
 		Matcher matcher = jiraUserMentionPattern.matcher(text);
 		StringBuffer sb = null;
 		while (matcher.find()) {
@@ -303,7 +432,30 @@ public class MarkdownEngine implements MarkupEngine {
 	}
 
 
-	private static final Phase1NodePostProcessor phase1PostProcessor = new Phase1NodePostProcessor();
+	/**
+	 * A rewrite anchored at the start of a line, applied to one line at a time.
+	 */
+	private static class LineRewrite {
+
+		private final Pattern pattern;
+
+		private final String replacement;
+
+
+		LineRewrite(String regex, String replacement) {
+			this.pattern = Pattern.compile(regex);
+			this.replacement = replacement;
+		}
+
+
+		String apply(String line) {
+			return this.pattern.matcher(line).replaceFirst(this.replacement);
+		}
+	}
+
+
+	/** Number of multi-line emphasis escapes made while parsing a document in phase 1. */
+	private static final DataKey<Integer> PHASE1_MODIFICATION_COUNT = new DataKey<>("PHASE1_MODIFICATION_COUNT", 0);
 
 	private static class Phase1NodePostProcessorFactory extends NodePostProcessorFactory {
 
@@ -315,23 +467,18 @@ public class MarkdownEngine implements MarkupEngine {
 
 		@Override
 		public NodePostProcessor create(Document document) {
-			phase1PostProcessor.reset();
-			return phase1PostProcessor;
+			return new Phase1NodePostProcessor(document);
 		}
 	}
 
 
 	private static class Phase1NodePostProcessor extends NodePostProcessor {
 
-		private int modificationCount = 0;
+		private final Document document;
 
 
-		boolean keepProcessing() {
-			return modificationCount > 0;
-		}
-
-		void reset() {
-			modificationCount = 0;
+		Phase1NodePostProcessor(Document document) {
+			this.document = document;
 		}
 
 		@Override
@@ -348,7 +495,8 @@ public class MarkdownEngine implements MarkupEngine {
 				}
 				// "\n"  - emphasis over multiple lines is legal but in 99% of cases not actually an emphasis
 				else if (content.contains("\n")) {
-					modificationCount++;
+					int count = PHASE1_MODIFICATION_COUNT.getFrom(this.document);
+					this.document.set(PHASE1_MODIFICATION_COUNT, count + 1);
 					content = "\\" + content;
 					replaceNodeWithText(state, node, content);
 				}
@@ -389,6 +537,14 @@ public class MarkdownEngine implements MarkupEngine {
 
 	private static class Phase2NodePostProcessor extends NodePostProcessor {
 
+		private static final Pattern nestedBulletListPattern = Pattern.compile("(?m)^[ \\t]*\\*\\* ");
+
+		private static final Pattern nestedDashListPattern = Pattern.compile("(?m)^[ \\t]*-- ");
+
+		private static final Pattern dashOrderedListPattern = Pattern.compile("(?m)^[ \\t]*-# ");
+
+		private static final Pattern bulletOrderedListPattern = Pattern.compile("(?m)^[ \\t]*\\*# ");
+
 		private static final Pattern ghUserMentionPattern = Pattern.compile("(^|[^\\w])(@[\\w-]+)");
 
 		private static final Pattern jiraKeyPattern = Pattern.compile("(" +
@@ -427,10 +583,10 @@ public class MarkdownEngine implements MarkupEngine {
 				content = replaceJiraKeysWithLinks(node, content);
 				// Unordered lists:
 				// no need to convert "-" or "* " (same in Markdown).
-				content = content.replaceAll("(?m)^[ \\t]*\\*\\* ", "   * ");
-				content = content.replaceAll("(?m)^[ \\t]*-- ",     "   - ");
-				content = content.replaceAll("(?m)^[ \\t]*-# ",     "   1. ");
-				content = content.replaceAll("(?m)^[ \\t]*\\*# ",   "   1. ");
+				content = replaceAll(content, "** ", nestedBulletListPattern, "   * ");
+				content = replaceAll(content, "-- ", nestedDashListPattern,   "   - ");
+				content = replaceAll(content, "-# ", dashOrderedListPattern,  "   1. ");
+				content = replaceAll(content, "*# ", bulletOrderedListPattern, "   1. ");
 			}
 			else if (node instanceof LinkRef) {
 				if (content.startsWith("[http://") || content.startsWith("[https://")) {
@@ -461,7 +617,7 @@ public class MarkdownEngine implements MarkupEngine {
 				if (content.startsWith("<a ") || content.equals("</a>")) {
 					return;
 				}
-				content = content.replaceAll("<", "\\\\<");
+				content = content.replace("<", "\\<");
 			}
 			else if (node instanceof Code) {
 				content = node.getChars().toString().replace("\\<", "<");
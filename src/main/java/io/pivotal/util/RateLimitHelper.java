@@ -15,35 +15,182 @@
  */
 package io.pivotal.util;
 
+import java.net.URI;
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 
-import reactor.core.publisher.Mono;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 
 /**
- * Rate limiter to ensure more efficient adherence to GitHub's limit of 1 update
- * per second. Simply sleeping before a call tends to stretch the overall time
- * as there is some additional processing time between calls.
+ * Rate limiter for GitHub API calls with a separate {@link TokenBucket} per
+ * {@link RequestClass}, so that e.g. polling for import results does not
+ * wait behind content-creating requests. Creates and updates also draw from
+ * a shared bucket that limits their combined rate. Bucket refills use the
+ * time of the reservation rather than sleeping a fixed amount before each
+ * call, which would stretch the overall time due to processing between calls.
+ * <p>In addition, the primary rate limit budget is tracked via the
+ * {@code X-RateLimit-*} response headers, and when it runs low, calls are
+ * spaced out proactively to last until the reset rather than running into 403s.
  *
  * @author Rossen Stoyanchev
  */
 public class RateLimitHelper {
 
-	private static final Mono<Object> parentMono = Mono.just("foo");
+	private static final Logger logger = LogManager.getLogger(RateLimitHelper.class);
+
+	/** Start pacing when less than this fraction of the primary budget remains. */
+	private static final double LOW_BUDGET_RATIO = 0.1;
+
+
+	private final Map<RequestClass, TokenBucket> buckets;
+
+	/** For requests of all {@link RequestClass#isMutation() mutating} classes, may be {@code null}. */
+	private final TokenBucket mutationBucket;
+
+	private long pausedUntilMillis;
+
+	private long pacingIntervalMillis;
+
+	private long nextSlotMillis;
+
+
+	/**
+	 * Create an instance with the default buckets. From
+	 * https://docs.github.com/en/rest/guides/best-practices-for-integrators#dealing-with-secondary-rate-limits
+	 * "If you're making a large number of POST, PATCH, PUT, or DELETE requests
+	 * for a single user or client ID, wait at least one second between each request".
+	 */
+	public RateLimitHelper() {
+		this(defaultBuckets(), new TokenBucket(1, Duration.ofSeconds(1)));
+	}
+
+	public RateLimitHelper(Map<RequestClass, TokenBucket> buckets) {
+		this(buckets, null);
+	}
+
+	/**
+	 * Create an instance with the given bucket per class of requests, and a
+	 * bucket that creates and updates also draw from, to limit their combined rate.
+	 */
+	public RateLimitHelper(Map<RequestClass, TokenBucket> buckets, TokenBucket mutationBucket) {
+		this.buckets = new EnumMap<>(buckets);
+		this.mutationBucket = mutationBucket;
+	}
+
+	private static Map<RequestClass, TokenBucket> defaultBuckets() {
+		Map<RequestClass, TokenBucket> buckets = new EnumMap<>(RequestClass.class);
+		buckets.put(RequestClass.CREATE, new TokenBucket(1, Duration.ofSeconds(1)));
+		buckets.put(RequestClass.UPDATE, new TokenBucket(1, Duration.ofSeconds(1)));
+		buckets.put(RequestClass.READ, new TokenBucket(10, Duration.ofMillis(100)));
+		return buckets;
+	}
 
-	private final Duration timeBetweenCalls = Duration.ofSeconds(1);
 
-	private Mono<Object> nextPermit;
+	/**
+	 * Reserve a call of the given class, and return how long to wait before
+	 * making it. Callers wait without blocking a thread, e.g. with a delay.
+	 */
+	public Duration reservePermitToCall(RequestClass requestClass) {
+		TokenBucket bucket = this.buckets.get(requestClass);
+		long waitMillis = (bucket != null ? bucket.reserve().toMillis() : 0);
+		if (this.mutationBucket != null && requestClass.isMutation()) {
+			waitMillis = Math.max(waitMillis, this.mutationBucket.reserve().toMillis());
+		}
+		return Duration.ofMillis(Math.max(waitMillis, reservePrimarySlot()));
+	}
 
+	private synchronized long reservePrimarySlot() {
+		long now = System.currentTimeMillis();
+		long slot = Math.max(now, Math.max(this.pausedUntilMillis, this.nextSlotMillis));
+		this.nextSlotMillis = slot + this.pacingIntervalMillis;
+		return slot - now;
+	}
 
-	public void obtainPermitToCall() {
-		if (nextPermit != null) {
-			nextPermit.block();
+	/**
+	 * Update the primary rate limit budget from the headers of a response.
+	 */
+	public synchronized void updateFromHeaders(HttpHeaders headers) {
+		String remaining = headers.getFirst("X-RateLimit-Remaining");
+		String reset = headers.getFirst("X-RateLimit-Reset");
+		if (remaining == null || reset == null) {
+			return;
+		}
+		String resource = headers.getFirst("X-RateLimit-Resource");
+		if (resource != null && !resource.equals("core")) {
+			// Separate budget, e.g. "graphql" or "search"
+			return;
+		}
+		String limit = headers.getFirst("X-RateLimit-Limit");
+		long remainingCount = Long.parseLong(remaining);
+		long limitCount = (limit != null ? Long.parseLong(limit) : 5000);
+		long resetMillis = 1000 * Long.parseLong(reset);
+		long millisUntilReset = Math.max(0, resetMillis - System.currentTimeMillis());
+		if (remainingCount <= 0) {
+			logger.debug("Primary rate limit exhausted, pausing for {} ms", millisUntilReset);
+			this.pausedUntilMillis = resetMillis;
+			this.pacingIntervalMillis = 0;
+		}
+		else if (remainingCount < limitCount * LOW_BUDGET_RATIO) {
+			this.pacingIntervalMillis = millisUntilReset / remainingCount;
+			logger.debug("{} calls remaining for {} ms, pacing at 1 per {} ms",
+					remainingCount, millisUntilReset, this.pacingIntervalMillis);
+		}
+		else {
+			this.pacingIntervalMillis = 0;
 		}
-		resetNextPermit();
 	}
 
-	private void resetNextPermit() {
-		nextPermit = parentMono.delayElement(timeBetweenCalls);
+
+	/**
+	 * Classes of requests that are rate limited independently.
+	 */
+	public enum RequestClass {
+
+		/** Content-creating requests, i.e. POST. */
+		CREATE,
+
+		/** Requests that modify or delete content, i.e. PATCH, PUT, and DELETE. */
+		UPDATE,
+
+		/** Read-only requests, e.g. listing or polling. */
+		READ;
+
+		/**
+		 * Whether requests of this class create, modify, or delete content.
+		 */
+		public boolean isMutation() {
+			return (this != READ);
+		}
+
+		/**
+		 * Variant of {@link #forMethod(HttpMethod)} that also considers the URL,
+		 * treating a POST to the GraphQL endpoint as a read since GraphQL is only
+		 * used for queries here.
+		 */
+		public static RequestClass forRequest(HttpMethod method, URI url) {
+			if (method == HttpMethod.POST && url.getPath().endsWith("/graphql")) {
+				return READ;
+			}
+			return forMethod(method);
+		}
+
+		public static RequestClass forMethod(HttpMethod method) {
+			switch (method) {
+				case POST:
+					return CREATE;
+				case PATCH:
+				case PUT:
+				case DELETE:
+					return UPDATE;
+				default:
+					return READ;
+			}
+		}
 	}
 
 }
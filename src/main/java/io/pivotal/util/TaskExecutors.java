@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Factory for executors of blocking I/O tasks, such as the per-issue requests
+ * of the post-migration apps. On a Java 21 runtime, each task can run on its
+ * own virtual thread, which makes it cheap to have many requests in flight.
+ * Concurrency is then bounded by the caller, e.g. with a
+ * {@link java.util.concurrent.Semaphore} and a {@link RateLimitHelper},
+ * rather than by the size of a thread pool.
+ * <p>The project compiles for Java 17, so virtual threads are created
+ * reflectively, with a fallback to a fixed thread pool on older runtimes.
+ */
+public class TaskExecutors {
+
+	private static final Logger logger = LogManager.getLogger(TaskExecutors.class);
+
+	private static final Method newVirtualThreadPerTaskExecutorMethod = initNewVirtualThreadPerTaskExecutorMethod();
+
+
+	private static Method initNewVirtualThreadPerTaskExecutorMethod() {
+		if (Runtime.version().feature() < 21) {
+			// Before 21, virtual threads are a preview feature, if present at all
+			return null;
+		}
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Whether the runtime supports virtual threads.
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return (newVirtualThreadPerTaskExecutorMethod != null);
+	}
+
+	/**
+	 * Create an executor for blocking I/O tasks that starts a virtual thread
+	 * per task if {@code virtualThreads} is set and the runtime supports it,
+	 * or otherwise uses a fixed pool of {@code poolSize} threads.
+	 */
+	public static ExecutorService newBlockingTaskExecutor(int poolSize, boolean virtualThreads) {
+		if (virtualThreads) {
+			if (isVirtualThreadSupported()) {
+				try {
+					return (ExecutorService) newVirtualThreadPerTaskExecutorMethod.invoke(null);
+				}
+				catch (ReflectiveOperationException ex) {
+					throw new IllegalStateException("Failed to create virtual thread executor", ex);
+				}
+			}
+			logger.warn("Virtual threads require Java 21, running on {} with a pool of {} threads",
+					Runtime.version(), poolSize);
+		}
+		return Executors.newFixedThreadPool(poolSize);
+	}
+
+}
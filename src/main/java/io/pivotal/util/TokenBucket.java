@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that allows bursts of up to {@code capacity} calls, refilled
+ * at one token per {@code timePerToken}.
+ * <p>Callers {@link #reserve() reserve} a token and are told how long to wait
+ * before using it. When the bucket is empty, it goes into debt, so concurrent
+ * callers are spaced out in the order of their reservations.
+ */
+public class TokenBucket {
+
+	private final int capacity;
+
+	private final long nanosPerToken;
+
+	private final LongSupplier nanoTime;
+
+	private double tokens;
+
+	private long lastRefillTime;
+
+
+	public TokenBucket(int capacity, Duration timePerToken) {
+		this(capacity, timePerToken, System::nanoTime);
+	}
+
+	TokenBucket(int capacity, Duration timePerToken, LongSupplier nanoTime) {
+		this.capacity = capacity;
+		this.nanosPerToken = timePerToken.toNanos();
+		this.nanoTime = nanoTime;
+		this.tokens = capacity;
+		this.lastRefillTime = nanoTime.getAsLong();
+	}
+
+
+	/**
+	 * Take a token and return how long to wait before proceeding.
+	 */
+	public synchronized Duration reserve() {
+		long now = this.nanoTime.getAsLong();
+		this.tokens = Math.min(this.capacity, this.tokens + (double) (now - this.lastRefillTime) / this.nanosPerToken);
+		this.lastRefillTime = now;
+		this.tokens -= 1;
+		return (this.tokens >= 0 ? Duration.ZERO : Duration.ofNanos((long) Math.ceil(-this.tokens * this.nanosPerToken)));
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import io.pivotal.util.RateLimitHelper.RequestClass;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpHeaders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link GitHubCredentialPool}.
+ */
+public class GitHubCredentialPoolTests {
+
+	private final GitHubCredentialPool pool =
+			new GitHubCredentialPool("write", Arrays.asList("read1", " read2", "", "write"));
+
+
+	@Test
+	public void tokens() {
+		assertThat(this.pool.size()).isEqualTo(3);
+		assertThat(new GitHubCredentialPool(null, Collections.singletonList("read1")).size()).isEqualTo(1);
+	}
+
+	@Test
+	public void writesArePinned() {
+		updateRemaining("write", 10);
+		updateRemaining("read1", 4000);
+		for (int i = 0; i < 5; i++) {
+			assertThat(this.pool.select(RequestClass.CREATE).getToken()).isEqualTo("write");
+			assertThat(this.pool.select(RequestClass.UPDATE).getToken()).isEqualTo("write");
+		}
+	}
+
+	@Test
+	public void readsRotateWhileBudgetUnknown() {
+		Set<String> tokens = new HashSet<>();
+		for (int i = 0; i < 3; i++) {
+			tokens.add(this.pool.select(RequestClass.READ).getToken());
+		}
+		assertThat(tokens).containsExactlyInAnyOrder("write", "read1", "read2");
+	}
+
+	@Test
+	public void readsUseMostRemainingBudget() {
+		updateRemaining("write", 100);
+		updateRemaining("read1", 3);
+		updateRemaining("read2", 102);
+
+		// Each selection counts against the budget until a response updates it
+		assertThat(this.pool.select(RequestClass.READ).getToken()).isEqualTo("read2");
+		assertThat(this.pool.select(RequestClass.READ).getToken()).isEqualTo("read2");
+		assertThat(this.pool.select(RequestClass.READ).getToken()).isIn("write", "read2");
+	}
+
+	@Test
+	public void otherRateLimitResourcesIgnored() {
+		updateRemaining("write", 5000);
+		updateRemaining("read1", 5000);
+		updateRemaining("read2", 5000);
+		HttpHeaders headers = rateLimitHeaders(0);
+		headers.set("X-RateLimit-Resource", "search");
+		this.pool.updateFromHeaders(credential("read1"), headers);
+		Set<String> tokens = new HashSet<>();
+		for (int i = 0; i < 3; i++) {
+			tokens.add(this.pool.select(RequestClass.READ).getToken());
+		}
+		assertThat(tokens).contains("read1");
+	}
+
+
+	private void updateRemaining(String token, long remaining) {
+		this.pool.updateFromHeaders(credential(token), rateLimitHeaders(remaining));
+	}
+
+	private GitHubCredentialPool.Credential credential(String token) {
+		return this.pool.getCredentials().stream()
+				.filter(credential -> credential.getToken().equals(token))
+				.findFirst().orElseThrow(IllegalArgumentException::new);
+	}
+
+	private static HttpHeaders rateLimitHeaders(long remaining) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-RateLimit-Limit", "5000");
+		headers.set("X-RateLimit-Remaining", String.valueOf(remaining));
+		headers.set("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + 3600));
+		return headers;
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.github;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.pivotal.util.RateLimitHelper;
+import io.pivotal.util.StubHttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Tests for {@link GitHubWebClient} against a stub server that fails a
+ * configured number of requests before it succeeds.
+ */
+public class GitHubWebClientTests {
+
+	private static final ParameterizedTypeReference<Map<String, Object>> MAP_TYPE =
+			new ParameterizedTypeReference<Map<String, Object>>() {};
+
+
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	private final List<String> authorizations = new CopyOnWriteArrayList<>();
+
+	private volatile int failureCount;
+
+	private volatile int failureStatus;
+
+	private volatile String retryAfter;
+
+	private StubHttpServer server;
+
+	private GitHubWebClient client;
+
+	private String url;
+
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		this.server = StubHttpServer.start().handle("/", this::handle);
+		this.url = this.server.getUrl();
+		this.client = new GitHubWebClient(this.url, new RateLimitHelper(), 5, 2);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	@Test
+	public void retryAfterRateLimit() {
+		this.failureCount = 2;
+		this.failureStatus = 403;
+		this.retryAfter = "0";
+		ResponseEntity<Map<String, Object>> entity = this.client.exchange(post(), MAP_TYPE).block();
+		assertThat(entity.getBody()).containsEntry("number", 1);
+		assertThat(this.requestCount.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void retriesAreBounded() {
+		this.failureCount = 10;
+		this.failureStatus = 429;
+		this.retryAfter = "0";
+		assertThatExceptionOfType(WebClientResponseException.class)
+				.isThrownBy(() -> this.client.exchange(post(), MAP_TYPE).block())
+				.satisfies(ex -> assertThat(ex.getRawStatusCode()).isEqualTo(429));
+		assertThat(this.requestCount.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void serverErrorNotRetriedForPost() {
+		this.failureCount = 1;
+		this.failureStatus = 502;
+		assertThatExceptionOfType(WebClientResponseException.class)
+				.isThrownBy(() -> this.client.exchange(post(), MAP_TYPE).block());
+		assertThat(this.requestCount.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void credentialPool() {
+		GitHubCredentialPool credentials = new GitHubCredentialPool("write", Arrays.asList("read1", "read2"));
+		GitHubWebClient client = new GitHubWebClient(this.url, credentials, 5, 2);
+		for (int i = 0; i < 3; i++) {
+			client.exchange(get(), MAP_TYPE).block();
+		}
+		assertThat(this.authorizations).containsExactlyInAnyOrder("token write", "token read1", "token read2");
+
+		this.authorizations.clear();
+		client.exchange(post(), MAP_TYPE).block();
+		client.exchange(post(), MAP_TYPE).block();
+		assertThat(this.authorizations).containsExactly("token write", "token write");
+	}
+
+	@Test
+	public void retryDelay() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Retry-After", "7");
+		assertThat(GitHubWebClient.getRetryDelay(HttpMethod.POST, exception(403, headers), 0))
+				.isEqualTo(Duration.ofSeconds(7));
+
+		assertThat(GitHubWebClient.getRetryDelay(HttpMethod.GET, exception(503, new HttpHeaders()), 0))
+				.isEqualTo(Duration.ofSeconds(1));
+		assertThat(GitHubWebClient.getRetryDelay(HttpMethod.GET, exception(503, new HttpHeaders()), 3))
+				.isEqualTo(Duration.ofSeconds(8));
+		assertThat(GitHubWebClient.getRetryDelay(HttpMethod.GET, exception(503, new HttpHeaders()), 20))
+				.isEqualTo(Duration.ofMinutes(1));
+		assertThat(GitHubWebClient.getRetryDelay(HttpMethod.PATCH, exception(503, new HttpHeaders()), 0)).isNull();
+		assertThat(GitHubWebClient.getRetryDelay(HttpMethod.GET, exception(404, new HttpHeaders()), 0)).isNull();
+	}
+
+
+	private RequestEntity<Void> get() {
+		return RequestEntity.get(URI.create(this.url + "/repos/spring-projects/test/issues/1"))
+				.header("Authorization", "token original")
+				.build();
+	}
+
+	private RequestEntity<Map<String, String>> post() {
+		return RequestEntity.post(URI.create(this.url + "/repos/spring-projects/test/issues"))
+				.body(Map.of("title", "Issue"));
+	}
+
+	private static WebClientResponseException exception(int status, HttpHeaders headers) {
+		return WebClientResponseException.create(status, "", headers, new byte[0], StandardCharsets.UTF_8);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		exchange.getRequestBody().readAllBytes();
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorization != null) {
+			this.authorizations.add(authorization);
+		}
+		int count = this.requestCount.incrementAndGet();
+		if (count <= this.failureCount) {
+			if (this.retryAfter != null) {
+				exchange.getResponseHeaders().add("Retry-After", this.retryAfter);
+			}
+			StubHttpServer.writeJson(exchange, this.failureStatus, "{\"message\":\"Failed\"}");
+		}
+		else {
+			StubHttpServer.writeJson(exchange, HttpStatus.CREATED.value(), "{\"number\":1}");
+		}
+	}
+
+}
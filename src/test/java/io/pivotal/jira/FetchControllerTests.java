@@ -0,0 +1,131 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FetchControllerTests {
+
+	@Test
+	public void fixedStrategyDoesNotAdapt() {
+		FetchController controller = new FetchController(new JiraConfig(), 1000, 5);
+		assertThat(controller.nextPageSize()).isEqualTo(1000);
+		assertThat(controller.getConcurrencyLimit()).isEqualTo(5);
+
+		controller.onError();
+		controller.onSuccess(60000, 1000, 10);
+		assertThat(controller.nextPageSize()).isEqualTo(1000);
+		assertThat(controller.getConcurrencyLimit()).isEqualTo(5);
+	}
+
+	@Test
+	public void adaptiveIncreaseOnFastResponse() {
+		FetchController controller = new FetchController(adaptiveConfig(), 1000, 8);
+		assertThat(controller.nextPageSize()).isEqualTo(250);
+		assertThat(controller.getConcurrencyLimit()).isEqualTo(4);
+
+		controller.onSuccess(100, 0, 0);
+		assertThat(controller.nextPageSize()).isEqualTo(350);
+		assertThat(controller.getConcurrencyLimit()).isEqualTo(5);
+
+		for (int i = 0; i < 20; i++) {
+			controller.onSuccess(100, 0, 0);
+		}
+		assertThat(controller.nextPageSize()).isEqualTo(1000);
+		assertThat(controller.getConcurrencyLimit()).isEqualTo(8);
+	}
+
+	@Test
+	public void adaptiveDecreaseOnSlowResponseOrError() {
+		FetchController controller = new FetchController(adaptiveConfig(), 1000, 8);
+
+		controller.onSuccess(30000, 0, 0);
+		assertThat(controller.nextPageSize()).isEqualTo(125);
+		assertThat(controller.getConcurrencyLimit()).isEqualTo(3);
+
+		controller.onError();
+		assertThat(controller.nextPageSize()).isEqualTo(62);
+		assertThat(controller.getConcurrencyLimit()).isEqualTo(1);
+
+		controller.onError();
+		assertThat(controller.nextPageSize()).isEqualTo(50);
+		assertThat(controller.getConcurrencyLimit()).isEqualTo(1);
+	}
+
+	@Test
+	public void adaptivePageSizeLimitedByPayload() {
+		JiraConfig config = adaptiveConfig();
+		config.setFetchTargetPageSize(DataSize.ofKilobytes(100));
+		FetchController controller = new FetchController(config, 1000, 8);
+
+		// 1KB per issue
+		controller.onSuccess(100, 250 * 1024, 250);
+		assertThat(controller.nextPageSize()).isEqualTo(100);
+	}
+
+	@Test
+	public void capPageSize() {
+		FetchController controller = new FetchController(new JiraConfig(), 1000, 5);
+		controller.capPageSize(100);
+		assertThat(controller.nextPageSize()).isEqualTo(100);
+	}
+
+	@Test
+	public void acquireWaitsForRelease() {
+		FetchController controller = new FetchController(new JiraConfig(), 1000, 1);
+		controller.acquire().block();
+
+		AtomicBoolean acquired = new AtomicBoolean();
+		controller.acquire().subscribe(aVoid -> {}, ex -> {}, () -> acquired.set(true));
+		assertThat(acquired.get()).isFalse();
+
+		controller.release();
+		assertThat(acquired.get()).isTrue();
+	}
+
+	@Test
+	public void cancelWhileWaitingDoesNotTakePermit() {
+		FetchController controller = new FetchController(new JiraConfig(), 1000, 1);
+		controller.acquire().block();
+
+		AtomicBoolean acquired = new AtomicBoolean();
+		Disposable waiting = controller.acquire().subscribe(aVoid -> {}, ex -> {}, () -> acquired.set(true));
+		waiting.dispose();
+		controller.release();
+		assertThat(acquired.get()).isFalse();
+
+		// The permit is free again, and the next one has to wait
+		controller.acquire().block(Duration.ofSeconds(1));
+		AtomicBoolean next = new AtomicBoolean();
+		controller.acquire().subscribe(aVoid -> {}, ex -> {}, () -> next.set(true));
+		assertThat(next.get()).isFalse();
+	}
+
+	private static JiraConfig adaptiveConfig() {
+		JiraConfig config = new JiraConfig();
+		config.setFetchStrategy(JiraConfig.FetchStrategy.ADAPTIVE);
+		return config;
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.pivotal.util.StubHttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Tests for paging through search results with {@link JiraClient} against a
+ * stub search endpoint with issues "SPR-1" to "SPR-{total}".
+ */
+public class JiraClientPagingTests {
+
+	private volatile long total;
+
+	private volatile long maxResultsCap = Long.MAX_VALUE;
+
+	private volatile boolean alwaysFail;
+
+	private final Set<Long> failingStartAts = ConcurrentHashMap.newKeySet();
+
+	private final Set<Long> delayedStartAts = ConcurrentHashMap.newKeySet();
+
+	/** startAt, maxResults requested, and response status, in order of arrival. */
+	private final List<long[]> requests = new CopyOnWriteArrayList<>();
+
+	private final AtomicInteger votesRequests = new AtomicInteger();
+
+	private StubHttpServer server;
+
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		this.server = StubHttpServer.start()
+				.handle("/rest/api/2/search", this::handleSearch)
+				.handle("/rest/api/2/issue/", this::handleVotes)
+				.handle("/rest/dev-status/1.0/issue/detail", this::handleCommits);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	@Test
+	public void pagesUpToTotalInOrder() {
+		this.total = 2500;
+		// The second page is the slowest, and later pages must wait for it
+		this.delayedStartAts.add(1000L);
+
+		List<JiraIssue> issues = createClient().findIssues("project = SPR");
+
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactlyElementsOf(keys(2500));
+		assertThat(this.requests).extracting(request -> request[0]).containsExactlyInAnyOrder(0L, 1000L, 2000L);
+	}
+
+	@Test
+	public void resumesAfterCappedMaxResults() {
+		this.total = 2500;
+		this.maxResultsCap = 400;
+
+		List<JiraIssue> issues = createClient().findIssues("project = SPR");
+
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactlyElementsOf(keys(2500));
+		// Each issue is requested once, with no requests past the total
+		assertThat(this.requests).extracting(request -> request[0])
+				.doesNotHaveDuplicates().allSatisfy(startAt -> assertThat(startAt).isLessThan(2500L));
+	}
+
+	@Test
+	public void retriesFailedPage() {
+		this.total = 3000;
+		this.failingStartAts.add(1000L);
+
+		List<JiraIssue> issues = createClient().findIssues("project = SPR");
+
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactlyElementsOf(keys(3000));
+		assertThat(this.requests).filteredOn(request -> request[0] == 1000L)
+				.extracting(request -> request[2]).containsExactly(500L, 200L);
+	}
+
+	@Test
+	public void splitsFailedPageForAdaptiveStrategy() {
+		this.total = 500;
+		this.failingStartAts.add(100L);
+		JiraConfig config = createConfig();
+		config.setFetchStrategy(JiraConfig.FetchStrategy.ADAPTIVE);
+		config.setSearchPageSize(400);
+		config.setSearchConcurrency(1);
+
+		List<JiraIssue> issues = new JiraClient(config).findIssues("project = SPR");
+
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactlyElementsOf(keys(500));
+		long[] failed = this.requests.stream().filter(request -> request[2] == 500L).findFirst().get();
+		long half = failed[1] / 2;
+		List<Long> startAts = this.requests.stream()
+				.filter(request -> request[2] == 200L).map(request -> request[0]).collect(Collectors.toList());
+		assertThat(startAts).contains(100L, 100L + half);
+		assertThat(this.requests).filteredOn(request -> request[0] == 100L && request[2] == 200L)
+				.extracting(request -> request[1]).containsExactly(half);
+	}
+
+	@Test
+	public void failsAfterRetries() {
+		this.total = 3000;
+		this.failingStartAts.add(1000L);
+		this.alwaysFail = true;
+
+		assertThatExceptionOfType(WebClientResponseException.class)
+				.isThrownBy(() -> createClient().findIssues("project = SPR"));
+		// The first attempt, and 3 retries
+		assertThat(this.requests).filteredOn(request -> request[0] == 1000L).hasSize(4);
+	}
+
+	@Test
+	public void votesInSearchSameAsVotesRequests() {
+		this.total = 12;
+		JiraConfig config = createConfig();
+		List<JiraIssue> perIssue = new JiraClient(config).findIssuesVotesAndCommits("project = SPR", issues -> issues);
+		assertThat(this.votesRequests.get()).isEqualTo(12);
+
+		config.setVotesInSearch(true);
+		List<JiraIssue> inSearch = new JiraClient(config).findIssuesVotesAndCommits("project = SPR", issues -> issues);
+		assertThat(this.votesRequests.get()).isEqualTo(12);
+
+		assertThat(inSearch).extracting(JiraIssue::getVotes)
+				.containsExactlyElementsOf(perIssue.stream().map(JiraIssue::getVotes).collect(Collectors.toList()))
+				.contains(0, 4);
+	}
+
+
+	private JiraClient createClient() {
+		return new JiraClient(createConfig());
+	}
+
+	private JiraConfig createConfig() {
+		JiraConfig config = new JiraConfig();
+		config.setBaseUrl(this.server.getUrl());
+		config.setProjectId("SPR");
+		return config;
+	}
+
+	private static List<String> keys(long count) {
+		return LongStream.range(0, count).mapToObj(i -> "SPR-" + (i + 1)).collect(Collectors.toList());
+	}
+
+	private void handleSearch(HttpExchange exchange) throws IOException {
+		Map<String, String> params = UriComponentsBuilder.fromUri(exchange.getRequestURI()).build()
+				.getQueryParams().toSingleValueMap();
+		long startAt = Long.parseLong(params.get("startAt"));
+		long requested = Long.parseLong(params.get("maxResults"));
+		long maxResults = Math.min(requested, this.maxResultsCap);
+		boolean fail = (this.alwaysFail ? this.failingStartAts.contains(startAt) : this.failingStartAts.remove(startAt));
+		this.requests.add(new long[] {startAt, requested, (fail ? 500 : 200)});
+		if (fail) {
+			StubHttpServer.writeJson(exchange, 500, "{\"errorMessages\":[\"Failed\"]}");
+			return;
+		}
+		if (this.delayedStartAts.contains(startAt)) {
+			try {
+				Thread.sleep(300);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		boolean includeVotes = params.get("fields").contains("votes");
+		String issues = LongStream.range(startAt, Math.min(startAt + maxResults, this.total))
+				.mapToObj(i -> "{\"id\":\"" + (i + 1) + "\",\"key\":\"SPR-" + (i + 1) + "\"," +
+						"\"fields\":{\"summary\":\"Issue " + (i + 1) + "\",\"issuetype\":{\"name\":\"Bug\"}," +
+						(includeVotes ? "\"votes\":{\"votes\":" + votes(i + 1) + ",\"hasVoted\":false}," : "") +
+						"\"fixVersions\":[],\"subtasks\":[]}}")
+				.collect(Collectors.joining(","));
+		StubHttpServer.writeJson(exchange, 200, "{\"startAt\":" + startAt + ",\"maxResults\":" + maxResults +
+				",\"total\":" + this.total + ",\"issues\":[" + issues + "]}");
+	}
+
+	/**
+	 * The per-issue "/issue/{id}/votes" request.
+	 */
+	private void handleVotes(HttpExchange exchange) throws IOException {
+		this.votesRequests.incrementAndGet();
+		String path = exchange.getRequestURI().getPath();
+		String id = path.substring("/rest/api/2/issue/".length(), path.length() - "/votes".length());
+		StubHttpServer.writeJson(exchange, 200, "{\"votes\":" + votes(Long.parseLong(id)) + ",\"hasVoted\":false}");
+	}
+
+	private void handleCommits(HttpExchange exchange) throws IOException {
+		StubHttpServer.writeJson(exchange, 200, "{\"detail\":[]}");
+	}
+
+	private static long votes(long id) {
+		return id % 5;
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JiraCommitCacheTests {
+
+	private static final DateTime UPDATED = new DateTime(2023, 1, 15, 10, 30);
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	public void putAndGetAfterRestart() throws Exception {
+		File file = new File(this.directory, "commits.txt");
+		try (JiraCommitCache cache = new JiraCommitCache(file)) {
+			assertThat(cache.get(issue("1", UPDATED))).isNull();
+			cache.put(issue("1", UPDATED), Arrays.asList("https://github.com/commit/a", "https://github.com/commit/b"));
+			cache.put(issue("2", UPDATED), Collections.emptyList());
+			assertThat(cache.get(issue("1", UPDATED))).hasSize(2);
+		}
+		try (JiraCommitCache cache = new JiraCommitCache(file)) {
+			assertThat(cache.get(issue("1", UPDATED)))
+					.containsExactly("https://github.com/commit/a", "https://github.com/commit/b");
+			assertThat(cache.get(issue("2", UPDATED))).isEmpty();
+			assertThat(cache.get(issue("3", UPDATED))).isNull();
+		}
+	}
+
+	@Test
+	public void issueUpdatedSinceCached() throws Exception {
+		File file = new File(this.directory, "commits.txt");
+		try (JiraCommitCache cache = new JiraCommitCache(file)) {
+			cache.put(issue("1", UPDATED), Collections.singletonList("https://github.com/commit/a"));
+		}
+		try (JiraCommitCache cache = new JiraCommitCache(file)) {
+			assertThat(cache.get(issue("1", UPDATED.plusMinutes(1)))).isNull();
+			cache.put(issue("1", UPDATED.plusMinutes(1)), Collections.singletonList("https://github.com/commit/b"));
+		}
+		try (JiraCommitCache cache = new JiraCommitCache(file)) {
+			assertThat(cache.get(issue("1", UPDATED.plusMinutes(1)))).containsExactly("https://github.com/commit/b");
+		}
+	}
+
+	private static JiraIssue issue(String id, DateTime updated) {
+		JiraIssue issue = new JiraIssue();
+		issue.setId(id);
+		issue.setKey("SPR-" + id);
+		issue.setFields(new JiraIssue.Fields());
+		issue.getFields().setUpdated(updated);
+		return issue;
+	}
+
+}
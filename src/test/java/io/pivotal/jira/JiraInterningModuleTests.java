@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JiraInterningModuleTests {
+
+	private final JiraInterningModule module = new JiraInterningModule();
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.modulesToInstall(new JodaModule(), this.module)
+			.build();
+
+
+	@Test
+	public void sharedValues() throws Exception {
+		JiraIssue first = read("SPR-1", "jhoeller");
+		JiraIssue second = read("SPR-2", "jhoeller");
+
+		JiraIssue.Fields fields1 = first.getFields();
+		JiraIssue.Fields fields2 = second.getFields();
+		assertThat(fields1.getReporter()).isSameAs(fields2.getReporter());
+		assertThat(fields1.getStatus()).isSameAs(fields2.getStatus());
+		assertThat(fields1.getIssuetype()).isSameAs(fields2.getIssuetype());
+		assertThat(fields1.getFixVersions().get(0)).isSameAs(fields2.getFixVersions().get(0));
+		assertThat(fields1.getComment().getComments().get(0).getAuthor()).isSameAs(fields1.getReporter());
+		assertThat(fields1.getLabels().get(0)).isSameAs(fields2.getLabels().get(0));
+
+		assertThat(read("SPR-3", "rstoyanchev").getFields().getReporter()).isNotSameAs(fields1.getReporter());
+	}
+
+	@Test
+	public void equalFieldsDifferentTypes() {
+		JiraStatus status = new JiraStatus();
+		status.setName("Closed");
+		JiraResolution resolution = new JiraResolution();
+		resolution.setName("Closed");
+		assertThat(this.module.intern(status)).isSameAs(status);
+		assertThat(this.module.intern(resolution)).isSameAs(resolution);
+		assertThat(this.module.getCanonicalValueCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void timestamps() throws Exception {
+		JiraIssue issue = read("SPR-1", "jhoeller");
+		DateTime expected = new DateTime(2017, 6, 1, 10, 15, 30, DateTimeZone.UTC);
+		assertThat(issue.getFields().getCreated().getMillis()).isEqualTo(expected.getMillis());
+		assertThat(issue.getFields().getUpdated().getMillis()).isEqualTo(expected.plusDays(1).getMillis());
+		assertThat(issue.getFields().getComment().getComments().get(0).getCreated().getMillis())
+				.isEqualTo(expected.getMillis());
+		assertThat(new JiraIssue.Fields().getCreated()).isNull();
+	}
+
+	private JiraIssue read(String key, String user) throws Exception {
+		String json = "{\"key\":\"" + key + "\",\"fields\":{" +
+				"\"summary\":\"Summary of " + key + "\"," +
+				"\"created\":\"2017-06-01T10:15:30.000+0000\"," +
+				"\"updated\":\"2017-06-02T10:15:30.000+0000\"," +
+				"\"issuetype\":{\"id\":1,\"name\":\"Bug\"}," +
+				"\"status\":{\"name\":\"Closed\"}," +
+				"\"resolution\":{\"name\":\"Fixed\"}," +
+				"\"fixVersions\":[{\"name\":\"5.0 GA\"}]," +
+				"\"labels\":[\"regression\"]," +
+				"\"reporter\":" + user(user) + "," +
+				"\"comment\":{\"comments\":[{\"author\":" + user(user) + "," +
+				"\"created\":\"2017-06-01T10:15:30.000+0000\",\"body\":\"Comment on " + key + "\"}]}}}";
+		return this.objectMapper.readValue(json, JiraIssue.class);
+	}
+
+	private String user(String name) {
+		return "{\"key\":\"" + name + "\",\"displayName\":\"" + name + "\"," +
+				"\"self\":\"https://jira.spring.io/rest/api/2/user?username=" + name + "\"}";
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JiraIssueSnapshotTests {
+
+	private static final String JQL = "project = SPR ORDER BY key ASC";
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	public void writeAndRead() throws Exception {
+		JiraIssueSnapshot snapshot = new JiraIssueSnapshot(directory, JQL);
+		assertThat(snapshot.exists()).isFalse();
+
+		DateTime syncTime = new DateTime(2023, 1, 15, 10, 30, DateTimeZone.UTC);
+		snapshot.write(Arrays.asList(issue("SPR-1", "First"), issue("SPR-2", "Second")), syncTime);
+
+		snapshot = new JiraIssueSnapshot(directory, JQL);
+		assertThat(snapshot.exists()).isTrue();
+		assertThat(snapshot.getLastSync().getMillis()).isEqualTo(syncTime.getMillis());
+
+		List<JiraIssue> issues = snapshot.read();
+		assertThat(issues).extracting(JiraIssue::getKey).containsExactly("SPR-1", "SPR-2");
+		JiraIssue.Fields fields = issues.get(0).getFields();
+		assertThat(fields.getSummary()).isEqualTo("First");
+		assertThat(fields.getCreated().getMillis()).isEqualTo(syncTime.minusYears(1).getMillis());
+		assertThat(fields.getReferenceUrl()).isEqualTo("https://example.org/First");
+	}
+
+	@Test
+	public void snapshotPerJql() throws Exception {
+		new JiraIssueSnapshot(directory, JQL).write(Collections.emptyList(), DateTime.now());
+		assertThat(new JiraIssueSnapshot(directory, JQL).exists()).isTrue();
+		assertThat(new JiraIssueSnapshot(directory, "project = SEC").exists()).isFalse();
+	}
+
+	@Test
+	public void deltaJql() throws Exception {
+		DateTime syncTime = new DateTime(2023, 1, 15, 10, 30);
+		JiraIssueSnapshot snapshot = new JiraIssueSnapshot(directory, JQL);
+		snapshot.write(Collections.emptyList(), syncTime);
+		assertThat(snapshot.getDeltaJql())
+				.isEqualTo("(project = SPR) AND updated >= \"2023/01/14 10:30\" ORDER BY key ASC");
+
+		snapshot = new JiraIssueSnapshot(directory, "id in (SPR-1, SPR-2)");
+		snapshot.write(Collections.emptyList(), syncTime);
+		assertThat(snapshot.getDeltaJql())
+				.isEqualTo("(id in (SPR-1, SPR-2)) AND updated >= \"2023/01/14 10:30\"");
+	}
+
+	@Test
+	public void merge() {
+		List<JiraIssue> issues = Arrays.asList(issue("SPR-1", "a"), issue("SPR-2", "b"), issue("SPR-3", "c"));
+		List<JiraIssue> updates = Arrays.asList(issue("SPR-2", "b2"), issue("SPR-4", "d"));
+
+		List<JiraIssue> merged = JiraIssueSnapshot.merge(issues, updates);
+		assertThat(merged).extracting(JiraIssue::getKey).containsExactly("SPR-1", "SPR-2", "SPR-3", "SPR-4");
+		assertThat(merged.get(1).getFields().getSummary()).isEqualTo("b2");
+	}
+
+	private static JiraIssue issue(String key, String summary) {
+		JiraIssue.Fields fields = new JiraIssue.Fields();
+		fields.setSummary(summary);
+		fields.setCreated(new DateTime(2022, 1, 15, 10, 30, DateTimeZone.UTC));
+		fields.setReferenceUrl("https://example.org/" + summary);
+		JiraIssue issue = new JiraIssue();
+		issue.setKey(key);
+		issue.setSelf("https://jira.spring.io/rest/api/2/issue/" + key);
+		issue.setFields(fields);
+		return issue;
+	}
+
+}
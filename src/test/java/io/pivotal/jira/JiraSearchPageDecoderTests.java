@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.jira;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+public class JiraSearchPageDecoderTests {
+
+	private static final String PAGE = "{\"expand\":\"names,schema\",\"startAt\":100,\"maxResults\":3,\"total\":250," +
+			"\"issues\":[" +
+			"{\"id\":\"1\",\"key\":\"SPR-1\",\"fields\":{\"summary\":\"First [issues]\",\"labels\":[\"a\",\"b\"]}}," +
+			"{\"id\":\"2\",\"key\":\"SPR-2\",\"fields\":{\"summary\":\"Second {\\\"quoted\\\"}\"}}," +
+			"{\"id\":\"3\",\"key\":\"SPR-3\",\"fields\":{\"summary\":\"Third\"}}" +
+			"],\"names\":{\"summary\":\"Summary\"}}";
+
+	private final JiraSearchPageDecoder decoder = new JiraSearchPageDecoder(
+			Jackson2ObjectMapperBuilder.json().modulesToInstall(new JodaModule()).build());
+
+
+	@Test
+	public void decodeInSingleBuffer() {
+		List<JiraSearchResult> results = decode(PAGE, PAGE.length());
+		assertPage(results);
+	}
+
+	@Test
+	public void decodeInSmallBuffers() {
+		for (int size = 1; size < 16; size++) {
+			assertPage(decode(PAGE, size));
+		}
+	}
+
+	@Test
+	public void decodeWithoutIssues() {
+		List<JiraSearchResult> results = decode("{\"startAt\":0,\"maxResults\":0,\"total\":42}", 5);
+		assertThat(results).hasSize(1);
+		assertThat(results.get(0).getTotal()).isEqualTo(42);
+		assertThat(results.get(0).getIssues()).isEmpty();
+	}
+
+	@Test
+	public void decodeVotes() {
+		String json = "{\"startAt\":0,\"maxResults\":1,\"total\":1,\"issues\":[" +
+				"{\"id\":\"1\",\"key\":\"SPR-1\",\"fields\":{\"summary\":\"First\"," +
+				"\"votes\":{\"self\":\"https://jira.spring.io/rest/api/2/issue/SPR-1/votes\",\"votes\":7,\"hasVoted\":false}}}]}";
+		List<JiraSearchResult> results = decode(json, 16);
+		assertThat(results).hasSize(2);
+		assertThat(results.get(1).getIssues().get(0).getFields().getVotes().getVotes()).isEqualTo(7);
+
+		// Without the field, votes are left for a separate request per issue
+		assertThat(decode(PAGE, 16).get(1).getIssues().get(0).getFields().getVotes()).isNull();
+	}
+
+	@Test
+	public void decodeIncompletePage() {
+		assertThatIllegalStateException().isThrownBy(() -> decode(PAGE.substring(0, PAGE.length() - 40), 7));
+	}
+
+	private void assertPage(List<JiraSearchResult> results) {
+		assertThat(results).hasSize(4);
+		for (JiraSearchResult result : results) {
+			assertThat(result.getStartAt()).isEqualTo(100);
+			assertThat(result.getMaxResults()).isEqualTo(3);
+			assertThat(result.getTotal()).isEqualTo(250);
+		}
+		assertThat(results.get(0).getIssues()).isEmpty();
+		assertThat(results.subList(1, 4)).allSatisfy(result -> assertThat(result.getIssues()).hasSize(1));
+		assertThat(results.subList(1, 4)).extracting(result -> result.getIssues().get(0).getKey())
+				.containsExactly("SPR-1", "SPR-2", "SPR-3");
+		assertThat(results.get(2).getIssues().get(0).getFields().getSummary()).isEqualTo("Second {\"quoted\"}");
+	}
+
+	private List<JiraSearchResult> decode(String json, int bufferSize) {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		List<DataBuffer> buffers = new ArrayList<>();
+		for (int i = 0; i < bytes.length; i += bufferSize) {
+			byte[] chunk = new byte[Math.min(bufferSize, bytes.length - i)];
+			System.arraycopy(bytes, i, chunk, 0, chunk.length);
+			buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(chunk));
+		}
+		return this.decoder.decode(Flux.fromIterable(buffers)).collectList().block();
+	}
+
+}
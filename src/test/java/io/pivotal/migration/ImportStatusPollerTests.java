@@ -0,0 +1,237 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.pivotal.jira.JiraIssue;
+import io.pivotal.util.IssueMappingIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class ImportStatusPollerTests {
+
+	private final StringWriter mappingsWriter = new StringWriter();
+
+	private final StringWriter failuresWriter = new StringWriter();
+
+	private final MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter);
+
+
+	@Test
+	public void pendingImportsArePolledUntilResolved() {
+		Map<String, AtomicInteger> checkCounts = new ConcurrentHashMap<>();
+		ImportStatusPoller.AsyncStatusCheck statusCheck = importedIssue -> {
+			String key = importedIssue.getJiraIssue().getKey();
+			int count = checkCounts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+			if (count < 3) {
+				return Mono.just(false);
+			}
+			importedIssue.setIssueNumber(Integer.parseInt(key.substring("SPR-".length())) + 1000);
+			return Mono.just(true);
+		};
+
+		try (ImportStatusPoller poller = createPoller(statusCheck)) {
+			poller.submit(importedIssue("SPR-1"));
+			poller.submit(importedIssue("SPR-2"));
+			poller.awaitCompletion();
+			assertThat(poller.getUnresolvedCount()).isEqualTo(0);
+		}
+
+		assertThat(checkCounts.get("SPR-1").get()).isEqualTo(3);
+		assertThat(checkCounts.get("SPR-2").get()).isEqualTo(3);
+		assertThat(context.getGitHubIssueId("SPR-1")).isEqualTo(1001);
+		assertThat(context.getGitHubIssueId("SPR-2")).isEqualTo(1002);
+	}
+
+	@Test
+	public void failedStatusCheckIsRetried(@TempDir File directory) throws Exception {
+		AtomicInteger checkCount = new AtomicInteger();
+		ImportStatusPoller.AsyncStatusCheck statusCheck = importedIssue -> {
+			if (checkCount.incrementAndGet() < 3) {
+				return Mono.error(new IllegalStateException("Status check failure"));
+			}
+			importedIssue.setIssueNumber(1001);
+			return Mono.just(true);
+		};
+
+		File file = new File(directory, "state.log");
+		try (MigrationStateStore stateStore = new MigrationStateStore(file)) {
+			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter, stateStore);
+			try (ImportStatusPoller poller = new ImportStatusPoller(
+					statusCheck, context, Duration.ofMillis(1), Duration.ofMillis(5), 1)) {
+				submit(poller, context, importedIssue("SPR-1"));
+				poller.awaitCompletion();
+			}
+			assertThat(context.getFailedImportCount()).isEqualTo(0);
+			assertThat(context.getGitHubIssueId("SPR-1")).isEqualTo(1001);
+		}
+		assertThat(checkCount.get()).isEqualTo(3);
+		assertThat(failuresWriter.toString()).isEmpty();
+	}
+
+	@Test
+	public void failedStatusCheckLeavesImportToCheckInNextRun(@TempDir File directory) throws Exception {
+		AtomicInteger checkCount = new AtomicInteger();
+		ImportStatusPoller.AsyncStatusCheck statusCheck = importedIssue -> {
+			checkCount.incrementAndGet();
+			return Mono.error(new IllegalStateException("Status check failure"));
+		};
+
+		File file = new File(directory, "state.log");
+		try (MigrationStateStore stateStore = new MigrationStateStore(file)) {
+			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter, stateStore);
+			try (ImportStatusPoller poller = new ImportStatusPoller(
+					statusCheck, context, Duration.ofMillis(1), Duration.ofMillis(5), 1)) {
+				submit(poller, context, importedIssue("SPR-1"));
+				poller.awaitCompletion();
+			}
+			assertThat(context.getFailedImportCount()).isEqualTo(1);
+		}
+		assertThat(checkCount.get()).isEqualTo(ImportStatusPoller.MAX_CHECK_FAILURES);
+		assertThat(failuresWriter.toString()).isEqualTo("=> SPR-1 [status unknown: Status check failure]\n");
+
+		// The next run checks the submitted import again, rather than submitting it again
+		try (MigrationStateStore stateStore = new MigrationStateStore(file)) {
+			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter, stateStore);
+			context.setPreviouslyImportedIssueMappings(new IssueMappingIndex());
+			assertThat(context.getSubmittedImportUrl(importedIssue("SPR-1").getJiraIssue(), null))
+					.isEqualTo(importUrl("SPR-1"));
+		}
+	}
+
+	@Test
+	public void pendingImportsAreListedInBulk() {
+		List<String> calls = new CopyOnWriteArrayList<>();
+		AtomicInteger listCount = new AtomicInteger();
+		ImportStatusPoller.BulkStatusCheck bulkStatusCheck = since -> Mono.fromCallable(() -> {
+			calls.add("list");
+			String status = (listCount.incrementAndGet() < 3 ? "pending" : "imported");
+			Map<String, String> statuses = new HashMap<>();
+			statuses.put(importUrl("SPR-1"), status);
+			statuses.put(importUrl("SPR-2"), status);
+			return statuses;
+		});
+		ImportStatusPoller.AsyncStatusCheck statusCheck = importedIssue -> Mono.fromCallable(() -> {
+			String key = importedIssue.getJiraIssue().getKey();
+			calls.add(key);
+			importedIssue.setIssueNumber(Integer.parseInt(key.substring("SPR-".length())) + 1000);
+			return true;
+		});
+
+		try (ImportStatusPoller poller = new ImportStatusPoller(statusCheck, bulkStatusCheck, context,
+				Duration.ofMillis(50), Duration.ofMillis(50), 2)) {
+			poller.submit(importedIssue("SPR-1"));
+			poller.submit(importedIssue("SPR-2"));
+			poller.awaitCompletion();
+		}
+
+		// Once listed as pending, imports are not checked one by one until they're no longer pending
+		assertThat(calls.get(0)).isEqualTo("list");
+		assertThat(calls).containsOnlyOnce("SPR-1", "SPR-2");
+		assertThat(context.getGitHubIssueId("SPR-1")).isEqualTo(1001);
+		assertThat(context.getGitHubIssueId("SPR-2")).isEqualTo(1002);
+	}
+
+	@Test
+	public void failedBulkStatusCheck() {
+		ImportStatusPoller.BulkStatusCheck bulkStatusCheck =
+				since -> Mono.error(new IllegalStateException("List failure"));
+		ImportStatusPoller.AsyncStatusCheck statusCheck = importedIssue -> {
+			importedIssue.setIssueNumber(1);
+			return Mono.just(true);
+		};
+
+		try (ImportStatusPoller poller = new ImportStatusPoller(statusCheck, bulkStatusCheck, context,
+				Duration.ofMillis(50), Duration.ofMillis(50), 2)) {
+			poller.submit(importedIssue("SPR-1"));
+			poller.submit(importedIssue("SPR-2"));
+			poller.awaitCompletion();
+		}
+
+		assertThat(context.getFailedImportCount()).isEqualTo(0);
+		assertThat(context.getGitHubIssueId("SPR-1")).isEqualTo(1);
+		assertThat(context.getGitHubIssueId("SPR-2")).isEqualTo(1);
+	}
+
+	@Test
+	public void failureToRecordResult() {
+		MigrationContext failingContext = new MigrationContext(mappingsWriter, failuresWriter) {
+
+			@Override
+			public synchronized void addImportResult(MigrationClient.ImportedIssue imported) {
+				if (imported.getJiraIssue().getKey().equals("SPR-1")) {
+					throw new IllegalStateException("State store failure");
+				}
+				super.addImportResult(imported);
+			}
+		};
+		ImportStatusPoller.AsyncStatusCheck statusCheck = importedIssue -> {
+			importedIssue.setIssueNumber(1000);
+			return Mono.just(true);
+		};
+
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			try (ImportStatusPoller poller = new ImportStatusPoller(
+					statusCheck, failingContext, Duration.ofMillis(1), Duration.ofMillis(5), 1)) {
+				poller.submit(importedIssue("SPR-1"));
+				poller.awaitCompletion();
+				// The poller is still running
+				poller.submit(importedIssue("SPR-2"));
+				poller.awaitCompletion();
+			}
+		});
+
+		assertThat(failingContext.getGitHubIssueId("SPR-1")).isNull();
+		assertThat(failingContext.getGitHubIssueId("SPR-2")).isEqualTo(1000);
+	}
+
+	private static void submit(ImportStatusPoller poller, MigrationContext context,
+			MigrationClient.ImportedIssue importedIssue) {
+
+		context.addSubmittedImport(importedIssue);
+		poller.submit(importedIssue);
+	}
+
+	private ImportStatusPoller createPoller(ImportStatusPoller.AsyncStatusCheck statusCheck) {
+		return new ImportStatusPoller(statusCheck, context, Duration.ofMillis(1), Duration.ofMillis(5), 1);
+	}
+
+	private static MigrationClient.ImportedIssue importedIssue(String jiraKey) {
+		JiraIssue jiraIssue = new JiraIssue();
+		jiraIssue.setKey(jiraKey);
+		MigrationClient.ImportGithubIssueResponse importResponse = new MigrationClient.ImportGithubIssueResponse();
+		importResponse.setUrl(importUrl(jiraKey));
+		return new MigrationClient.ImportedIssue(jiraIssue, null, importResponse);
+	}
+
+	private static String importUrl(String jiraKey) {
+		return "https://api.github.com/repos/spring-projects/test/import/issues/" + jiraKey;
+	}
+
+}
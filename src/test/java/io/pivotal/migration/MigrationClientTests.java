@@ -0,0 +1,377 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import io.pivotal.github.GithubConfig;
+import io.pivotal.github.ImportGithubIssue;
+import io.pivotal.jira.JiraCommentPage;
+import io.pivotal.jira.JiraConfig;
+import io.pivotal.jira.JiraIssue;
+import io.pivotal.jira.JiraUser;
+import io.pivotal.jira.JiraVersion;
+import io.pivotal.jira.JiraWatcher;
+import io.pivotal.util.MarkdownEngine;
+import io.pivotal.util.MarkupManager;
+import io.pivotal.util.StubHttpServer;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link MigrationClient}, creating milestones and labels against
+ * a stub GitHub repository, and preparing issues for import.
+ */
+public class MigrationClientTests {
+
+	private static final String REPOSITORY_PATH = "/repos/spring-projects/test";
+
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final List<Map<String, Object>> milestones = Collections.synchronizedList(new ArrayList<>());
+
+	private final List<Map<String, Object>> labels = Collections.synchronizedList(new ArrayList<>());
+
+	/** Label names for which to reject creation with a 422. */
+	private final Set<String> rejectedLabels = Collections.synchronizedSet(new LinkedHashSet<>());
+
+	/** Method and path of each write request, in order. */
+	private final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+
+	/** Path and query of each list request, in order. */
+	private final List<String> reads = Collections.synchronizedList(new ArrayList<>());
+
+	private final Set<Map<String, String>> labelHandlerLabels = new LinkedHashSet<>();
+
+	private boolean linkHeader = true;
+
+	private StubHttpServer server;
+
+	private MigrationClient client;
+
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		this.server = StubHttpServer.start().handle(REPOSITORY_PATH + "/", this::handle);
+
+		GithubConfig config = new GithubConfig();
+		config.setApiUrl(this.server.getUrl());
+		config.setRepositorySlug("spring-projects/test");
+		config.setAccessToken("token");
+
+		MilestoneFilter milestoneFilter = version -> !version.getName().equals("0.9");
+		LabelHandler labelHandler = new LabelHandler() {
+
+			@Override
+			public Set<Map<String, String>> getAllLabels() {
+				return labelHandlerLabels;
+			}
+
+			@Override
+			public Set<String> getLabelsFor(JiraIssue issue) {
+				return Collections.emptySet();
+			}
+		};
+		MarkdownEngine markdownEngine = new MarkdownEngine();
+		JiraConfig jiraConfig = new JiraConfig();
+		jiraConfig.setBaseUrl("https://jira.spring.io");
+		markdownEngine.setJiraConfig(jiraConfig);
+		MarkupManager markupManager = new MarkupManager();
+		ReflectionTestUtils.setField(markupManager, "markdown", markdownEngine);
+
+		// Vary the time to prepare each issue, so that preparation completes out of order
+		IssueProcessor issueProcessor = new IssueProcessor() {
+
+			@Override
+			public void beforeConversion(JiraIssue jiraIssue) {
+				try {
+					Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		this.client = new MigrationClient(config, markupManager, milestoneFilter, labelHandler, issueProcessor);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	@Test
+	public void createMilestonesInPartiallyExistingRepository() {
+		// GitHub keeps only the date, at a time of day in its own time zone
+		this.milestones.add(milestone(1, "1.0", "closed", "2020-01-01T08:00:00Z"));
+		this.milestones.add(milestone(2, "1.1", "open", null));
+		List<JiraVersion> versions = Arrays.asList(
+				version("0.9", true, new DateTime(2019, 1, 1, 0, 0, DateTimeZone.UTC)),
+				version("1.0", true, new DateTime(2020, 1, 1, 0, 0, DateTimeZone.UTC)),
+				version("1.1", true, null),
+				version("2.0", false, new DateTime(2021, 6, 1, 0, 0, DateTimeZone.UTC)));
+
+		this.client.createMilestones(versions);
+
+		assertThat(this.writes).containsExactlyInAnyOrder("POST /milestones 2.0", "PATCH /milestones/2 1.1");
+		assertThat(this.milestones).extracting(milestone -> milestone.get("title"))
+				.containsExactly("1.0", "1.1", "2.0");
+		assertThat(this.milestones.get(1)).containsEntry("state", "closed");
+
+		this.writes.clear();
+		this.client.createMilestones(versions);
+		assertThat(this.writes).isEmpty();
+	}
+
+	@Test
+	public void createMilestonesWithChangedDueDate() {
+		this.milestones.add(milestone(1, "1.0", "closed", "2020-01-01T08:00:00Z"));
+
+		this.client.createMilestones(Collections.singletonList(
+				version("1.0", true, new DateTime(2020, 1, 3, 0, 0, DateTimeZone.UTC))));
+
+		assertThat(this.writes).containsExactly("PATCH /milestones/1 1.0");
+	}
+
+	@Test
+	public void createLabelsInPartiallyExistingRepository() {
+		this.labels.add(existingLabel("Bug", "ff0000"));
+		this.labels.add(existingLabel("type: task", "00ff00"));
+		this.labelHandlerLabels.add(label("bug", "FF0000"));
+		this.labelHandlerLabels.add(label("type: task", "0000ff"));
+		this.labelHandlerLabels.add(label("status: declined", "abcdef"));
+
+		this.client.createLabels();
+
+		assertThat(this.writes).containsExactlyInAnyOrder(
+				"POST /labels status: declined", "PATCH /labels/type: task type: task");
+		assertThat(this.labels).extracting(label -> label.get("name"))
+				.containsExactly("Bug", "type: task", "status: declined");
+
+		this.writes.clear();
+		this.client.createLabels();
+		assertThat(this.writes).isEmpty();
+	}
+
+	@Test
+	public void createLabelsToleratesUnprocessableEntity() {
+		this.rejectedLabels.add("status: declined");
+		this.labelHandlerLabels.add(label("status: declined", "abcdef"));
+		this.labelHandlerLabels.add(label("status: invalid", "abcdef"));
+
+		this.client.createLabels();
+
+		assertThat(this.writes).containsExactlyInAnyOrder("POST /labels status: declined", "POST /labels status: invalid");
+		assertThat(this.labels).extracting(label -> label.get("name")).containsExactly("status: invalid");
+	}
+
+	@Test
+	public void listPagesFromLinkHeader() {
+		for (int i = 1; i <= 250; i++) {
+			this.milestones.add(milestone(i, "1." + i, "open", null));
+		}
+
+		this.client.createMilestones(Collections.singletonList(version("1.250", false, null)));
+
+		assertThat(this.writes).isEmpty();
+		assertThat(this.reads).containsExactlyInAnyOrder(
+				"/milestones?state=all&per_page=100&page=1",
+				"/milestones?state=all&per_page=100&page=2",
+				"/milestones?state=all&per_page=100&page=3");
+	}
+
+	@Test
+	public void listPagesOneAtATimeWithoutLinkHeader() {
+		this.linkHeader = false;
+		for (int i = 1; i <= 200; i++) {
+			this.labels.add(existingLabel("label " + i, "ffffff"));
+		}
+		this.labelHandlerLabels.add(label("label 200", "ffffff"));
+
+		this.client.createLabels();
+
+		assertThat(this.writes).isEmpty();
+		// The second page is full, so it takes an empty page to find the end
+		assertThat(this.reads).containsExactly(
+				"/labels?per_page=100&page=1", "/labels?per_page=100&page=2", "/labels?per_page=100&page=3");
+	}
+
+	@Test
+	public void prepareIssuesInParallelKeepsOrder() {
+		List<JiraIssue> issues = new ArrayList<>();
+		for (int i = 1; i <= 100; i++) {
+			issues.add(jiraIssue(i));
+		}
+		this.client.setPreparationParallelism(8);
+
+		List<ImportGithubIssue> prepared = this.client.prepareIssues(issues, Collections.emptyMap(), Collections.emptyList());
+
+		assertThat(prepared).extracting(importIssue -> importIssue.getIssue().getTitle())
+				.containsExactlyElementsOf(issues.stream()
+						.map(issue -> issue.getFields().getSummary() + " [" + issue.getKey() + "]")
+						.collect(Collectors.toList()));
+		assertThat(prepared.get(41).getIssue().getBody()).contains("Description with `code 42`");
+	}
+
+
+	private static JiraIssue jiraIssue(int id) {
+		JiraUser reporter = new JiraUser();
+		reporter.setKey("user" + id);
+		reporter.setDisplayName("User " + id);
+		reporter.setSelf("https://jira.spring.io/rest/api/2/user?username=user" + id);
+
+		JiraCommentPage comments = new JiraCommentPage();
+		comments.setComments(Collections.emptyList());
+
+		JiraIssue.Fields fields = new JiraIssue.Fields();
+		fields.setSummary("Issue " + id);
+		fields.setDescription("Description with {{code " + id + "}}");
+		fields.setCreated(new DateTime(2018, 1, 1, 0, 0, DateTimeZone.UTC));
+		fields.setReporter(reporter);
+		fields.setComment(comments);
+		fields.setVersions(Collections.emptyList());
+		fields.setFixVersions(Collections.emptyList());
+		fields.setAttachment(Collections.emptyList());
+		fields.setSubtasks(Collections.emptyList());
+		fields.setIssuelinks(Collections.emptyList());
+		fields.setWatches(new JiraWatcher());
+
+		JiraIssue issue = new JiraIssue();
+		issue.setKey("SPR-" + id);
+		issue.setSelf("https://jira.spring.io/rest/api/2/issue/" + id);
+		issue.setFields(fields);
+		issue.setCommitUrls(Collections.emptyList());
+		issue.initFixAndBackportVersions();
+		return issue;
+	}
+
+	private static Map<String, Object> milestone(int number, String title, String state, String dueOn) {
+		Map<String, Object> milestone = new LinkedHashMap<>();
+		milestone.put("number", number);
+		milestone.put("title", title);
+		milestone.put("state", state);
+		milestone.put("due_on", dueOn);
+		return milestone;
+	}
+
+	private static Map<String, String> label(String name, String color) {
+		Map<String, String> label = new LinkedHashMap<>();
+		label.put("name", name);
+		label.put("color", color);
+		return label;
+	}
+
+	private static Map<String, Object> existingLabel(String name, String color) {
+		return new LinkedHashMap<>(label(name, color));
+	}
+
+	private static JiraVersion version(String name, boolean released, DateTime releaseDate) {
+		JiraVersion version = new JiraVersion();
+		version.setName(name);
+		version.setReleased(released);
+		version.setReleaseDate(releaseDate);
+		return version;
+	}
+
+	/**
+	 * Handle requests one at a time, since writes look up and update the lists.
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized void handle(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath().substring(REPOSITORY_PATH.length());
+		if (method.equals("GET")) {
+			this.reads.add(path + "?" + exchange.getRequestURI().getQuery());
+			Map<String, String> params = UriComponentsBuilder.fromUri(exchange.getRequestURI()).build()
+					.getQueryParams().toSingleValueMap();
+			List<Map<String, Object>> items = (path.equals("/milestones") ? this.milestones : this.labels);
+			writeListPage(exchange, path, items,
+					Integer.parseInt(params.get("page")), Integer.parseInt(params.get("per_page")));
+			return;
+		}
+		Map<String, Object> body = this.objectMapper.readValue(exchange.getRequestBody(), Map.class);
+		String name = (String) (path.startsWith("/milestones") ? body.get("title") : body.get("name"));
+		this.writes.add(method + " " + path + " " + name);
+		if (method.equals("POST") && path.equals("/labels") && this.rejectedLabels.contains(name)) {
+			writeJson(exchange, 422, Collections.singletonMap("message", "Validation Failed"));
+			return;
+		}
+		Map<String, Object> item;
+		if (method.equals("POST")) {
+			item = new LinkedHashMap<>(body);
+			if (path.equals("/milestones")) {
+				item.put("number", this.milestones.size() + 1);
+				this.milestones.add(item);
+			}
+			else {
+				this.labels.add(item);
+			}
+		}
+		else {
+			String id = path.substring(path.lastIndexOf('/') + 1);
+			List<Map<String, Object>> items = (path.startsWith("/milestones") ? this.milestones : this.labels);
+			String key = (path.startsWith("/milestones") ? "number" : "name");
+			item = items.stream().filter(candidate -> String.valueOf(candidate.get(key)).equals(id)).findFirst().get();
+			item.putAll(body);
+		}
+		writeJson(exchange, (method.equals("POST") ? 201 : 200), item);
+	}
+
+	private void writeListPage(HttpExchange exchange, String path,
+			List<Map<String, Object>> items, int page, int pageSize) throws IOException {
+
+		List<Map<String, Object>> content;
+		int lastPage;
+		synchronized (items) {
+			int from = Math.min(items.size(), (page - 1) * pageSize);
+			content = new ArrayList<>(items.subList(from, Math.min(items.size(), from + pageSize)));
+			lastPage = Math.max(1, (items.size() + pageSize - 1) / pageSize);
+		}
+		if (this.linkHeader && lastPage > 1) {
+			String url = "http://127.0.0.1/repositories/1" + path + "?per_page=" + pageSize + "&page=";
+			exchange.getResponseHeaders().add("Link",
+					"<" + url + Math.min(page + 1, lastPage) + ">; rel=\"next\", <" + url + lastPage + ">; rel=\"last\"");
+		}
+		writeJson(exchange, 200, content);
+	}
+
+	private void writeJson(HttpExchange exchange, int status, Object body) throws IOException {
+		StubHttpServer.writeJson(exchange, status, this.objectMapper.writeValueAsString(body));
+	}
+
+}
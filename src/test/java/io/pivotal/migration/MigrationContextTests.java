@@ -15,13 +15,16 @@
  */
 package io.pivotal.migration;
 
+import java.io.File;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import io.pivotal.jira.JiraIssue;
+import io.pivotal.util.IssueMappingIndex;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -73,10 +76,34 @@ public class MigrationContextTests {
 		assertThat(context.toString()).isEqualTo("0 imported issues, 1 failed imports, 0 backported issue holders");
 	}
 
-	private static MigrationClient.ImportedIssue jiraIssueImport(String jiraKey, Integer ghIssueId, String failure) {
+	@Test
+	public void importResultsWithStateStore(@TempDir File directory) throws Exception {
+		File file = new File(directory, "state.log");
+		try (MigrationStateStore stateStore = new MigrationStateStore(file)) {
+			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter, stateStore);
+			context.addSubmittedImport(jiraIssueImport("SPR-1", null, null));
+			context.addSubmittedImport(jiraIssueImport("SPR-2", null, null));
+			context.addImportResult(jiraIssueImport("SPR-1", 1300, null));
+		}
+		try (MigrationStateStore stateStore = new MigrationStateStore(file)) {
+			MigrationContext context = new MigrationContext(mappingsWriter, failuresWriter, stateStore);
+			context.setPreviouslyImportedIssueMappings(new IssueMappingIndex());
+			assertThat(context.getGitHubIssueId("SPR-1")).isEqualTo(1300);
+			assertThat(context.getSubmittedImportUrl(issue("SPR-1"), null)).isNull();
+			assertThat(context.getSubmittedImportUrl(issue("SPR-2"), null)).isEqualTo("https://api.github.com/import/SPR-2");
+		}
+	}
+
+	private static JiraIssue issue(String jiraKey) {
 		JiraIssue jiraIssue = new JiraIssue();
 		jiraIssue.setKey(jiraKey);
-		MigrationClient.ImportedIssue imported = new MigrationClient.ImportedIssue(jiraIssue, null, null);
+		return jiraIssue;
+	}
+
+	private static MigrationClient.ImportedIssue jiraIssueImport(String jiraKey, Integer ghIssueId, String failure) {
+		MigrationClient.ImportGithubIssueResponse response = new MigrationClient.ImportGithubIssueResponse();
+		response.setUrl("https://api.github.com/import/" + jiraKey);
+		MigrationClient.ImportedIssue imported = new MigrationClient.ImportedIssue(issue(jiraKey), null, response);
 		imported.setIssueNumber(ghIssueId);
 		imported.setFailure(failure);
 		return imported;
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.migration;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class MigrationStateStoreTests {
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	public void resumeAfterRestart() throws Exception {
+		File file = new File(this.directory, "state.log");
+		try (MigrationStateStore store = new MigrationStateStore(file)) {
+			assertThat(store.isEmpty()).isTrue();
+			store.addCompletedPhase("milestones");
+			store.addSubmittedImport("SPR-1", "https://api.github.com/import/1");
+			store.addSubmittedImport("SPR-2", "https://api.github.com/import/2");
+			store.addSubmittedImport("SPR-3", "https://api.github.com/import/3");
+			store.addConfirmedImport("SPR-1", 101);
+			store.addFailedImport("SPR-3");
+		}
+		try (MigrationStateStore store = new MigrationStateStore(file)) {
+			assertThat(store.isCompletedPhase("milestones")).isTrue();
+			assertThat(store.isCompletedPhase("labels")).isFalse();
+			assertThat(store.getConfirmedImports()).containsExactly(entry("SPR-1", 101));
+			assertThat(store.getSubmittedImportUrl("SPR-1")).isNull();
+			assertThat(store.getSubmittedImportUrl("SPR-2")).isEqualTo("https://api.github.com/import/2");
+			assertThat(store.getSubmittedImportUrl("SPR-3")).isNull();
+		}
+	}
+
+	@Test
+	public void recordsWrittenBeforeClose() throws Exception {
+		File file = new File(this.directory, "state.log");
+		MigrationStateStore store = new MigrationStateStore(file, 1000, Duration.ofHours(1));
+		store.addSubmittedImport("SPR-1", "https://api.github.com/import/1");
+		store.addConfirmedImport("SPR-1", 101);
+
+		// Simulate a crash, without close, and with a partially written record
+		Files.write(file.toPath(), "S\tSPR-2".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		try (MigrationStateStore restarted = new MigrationStateStore(file)) {
+			assertThat(restarted.getConfirmedImports()).containsExactly(entry("SPR-1", 101));
+			assertThat(restarted.getSubmittedImportUrl("SPR-2")).isNull();
+		}
+	}
+
+	@Test
+	public void compaction() throws Exception {
+		File file = new File(this.directory, "state.log");
+		try (MigrationStateStore store = new MigrationStateStore(file)) {
+			for (int i = 0; i < 2000; i++) {
+				store.addSubmittedImport("SPR-" + i, "https://api.github.com/import/" + i);
+				store.addConfirmedImport("SPR-" + i, i);
+			}
+			assertThat(Files.readAllLines(file.toPath()).size()).isLessThan(4000);
+		}
+		List<String> lines = Files.readAllLines(file.toPath());
+		assertThat(lines).hasSize(2000).allMatch(line -> line.startsWith("C\t"));
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.post;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import io.pivotal.github.GitHubWebClient;
+import io.pivotal.util.RateLimitHelper;
+import io.pivotal.util.StubHttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+/**
+ * Tests for {@link GitHubGraphQlReader} against a stub GraphQL endpoint.
+ */
+public class GitHubGraphQlReaderTests {
+
+	private static final long LARGE_COMMENT_ID = Integer.MAX_VALUE + 1234567L;
+
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final List<Map<String, Object>> requests = Collections.synchronizedList(new ArrayList<>());
+
+	private StubHttpServer server;
+
+	private GitHubGraphQlReader reader;
+
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		this.server = StubHttpServer.start().handle("/graphql", this::handle);
+		String endpoint = this.server.getUrl() + "/graphql";
+		GitHubWebClient webClient = new GitHubWebClient(endpoint, new RateLimitHelper());
+		this.reader = new GitHubGraphQlReader(webClient, endpoint, "token", "spring-projects/test", 2);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	@Test
+	public void readIssuePages() {
+		GitHubGraphQlReader.IssuePage page = this.reader.readIssuePage(null, null);
+		assertThat(page.getIssues()).extracting(GitHubGraphQlReader.Issue::getNumber).containsExactly(1, 2);
+		assertThat(page.getNextCursor()).isEqualTo("c2");
+		assertThat(commentIds(page.getIssues().get(0))).containsExactly(11L, 12L, 13L);
+		assertThat(commentIds(page.getIssues().get(1))).isEmpty();
+
+		page = this.reader.readIssuePage(null, page.getNextCursor());
+		assertThat(page.getIssues()).extracting(GitHubGraphQlReader.Issue::getNumber).containsExactly(3);
+		assertThat(page.getIssues().get(0).getBody()).isEqualTo("Body 3");
+		assertThat(page.getNextCursor()).isNull();
+
+		// 2 pages of issues, and 1 more page of comments for issue #1
+		assertThat(this.requests).hasSize(3);
+		Map<String, Object> variables = variables(this.requests.get(0));
+		assertThat(variables).containsEntry("owner", "spring-projects").containsEntry("name", "test")
+				.containsEntry("pageSize", 2);
+		assertThat(variables(this.requests.get(1))).containsEntry("id", "I1").containsEntry("cursor", "c12");
+		assertThat(variables(this.requests.get(2))).containsEntry("cursor", "c2");
+	}
+
+	@Test
+	public void labelsFilter() {
+		this.reader.readIssuePage(Arrays.asList("status: bulk-closed"), null);
+		assertThat(variables(this.requests.get(0))).containsEntry("labels", Arrays.asList("status: bulk-closed"));
+	}
+
+	@Test
+	public void commentIdAboveIntRange() {
+		GitHubGraphQlReader.IssuePage page = this.reader.readIssuePage(null, "large-ids");
+		assertThat(commentIds(page.getIssues().get(0))).containsExactly(LARGE_COMMENT_ID);
+		assertThat((String) this.requests.get(0).get("query")).contains("fullDatabaseId").doesNotContain(" databaseId");
+	}
+
+	@Test
+	public void errorResponse() {
+		assertThatIllegalStateException().isThrownBy(() -> this.reader.readIssuePage(null, "invalid"))
+				.withMessageContaining("Bad cursor");
+	}
+
+
+	private static List<Long> commentIds(GitHubGraphQlReader.Issue issue) {
+		return issue.getComments().getNodes().stream()
+				.map(GitHubGraphQlReader.Comment::getDatabaseId)
+				.collect(Collectors.toList());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> variables(Map<String, Object> request) {
+		return (Map<String, Object>) request.get("variables");
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		Map<String, Object> request = this.objectMapper.readValue(exchange.getRequestBody(), Map.class);
+		this.requests.add(request);
+		String query = (String) request.get("query");
+		Object cursor = variables(request).get("cursor");
+		String json;
+		if (query.contains("node(id: $id)")) {
+			json = "{\"data\":{\"node\":{\"comments\":" + comments(false, 13) + "}}}";
+		}
+		else if (cursor == null) {
+			json = "{\"data\":{\"repository\":{\"issues\":{" +
+					"\"pageInfo\":{\"hasNextPage\":true,\"endCursor\":\"c2\"},\"nodes\":[" +
+					issue(1, comments(true, 11, 12)) + "," + issue(2, comments(false)) + "]}}}}";
+		}
+		else if (cursor.equals("large-ids")) {
+			json = "{\"data\":{\"repository\":{\"issues\":{" +
+					"\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":\"c4\"},\"nodes\":[" +
+					issue(4, comments(false, LARGE_COMMENT_ID)) + "]}}}}";
+		}
+		else if (cursor.equals("c2")) {
+			json = "{\"data\":{\"repository\":{\"issues\":{" +
+					"\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":\"c3\"},\"nodes\":[" +
+					issue(3, comments(false)) + "]}}}}";
+		}
+		else {
+			json = "{\"data\":null,\"errors\":[{\"message\":\"Bad cursor\"}]}";
+		}
+		StubHttpServer.writeJson(exchange, 200, json);
+	}
+
+	private static String issue(int number, String comments) {
+		return "{\"id\":\"I" + number + "\",\"number\":" + number + ",\"state\":\"OPEN\"," +
+				"\"body\":\"Body " + number + "\",\"comments\":" + comments + "}";
+	}
+
+	private static String comments(boolean hasNextPage, long... ids) {
+		String nodes = Arrays.stream(ids)
+				.mapToObj(id -> "{\"fullDatabaseId\":\"" + id + "\",\"body\":\"Comment " + id + "\"}")
+				.collect(Collectors.joining(","));
+		long lastId = (ids.length > 0 ? ids[ids.length - 1] : 0);
+		return "{\"pageInfo\":{\"hasNextPage\":" + hasNextPage + ",\"endCursor\":\"c" + lastId + "\"}," +
+				"\"nodes\":[" + nodes + "]}";
+	}
+
+}
@@ -94,4 +94,10 @@ public class JiraLinkConverterTests {
 						"a new PathElement subtype specifically for suffixed PathElements (because currently `\"{foo}.*\"`) type patterns are captured as RegexPathElement instances (the least optimal of the PathElement subtypes).\n");
 	}
 
+	@Test
+	public void textWithoutJiraKeysNotParsed() {
+		String body = "No links  here, * just text\n\n\n";
+		assertThat(converter.convert(body)).isSameAs(body);
+	}
+
 }
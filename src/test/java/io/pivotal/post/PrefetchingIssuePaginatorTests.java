@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.post;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrefetchingIssuePaginatorTests {
+
+	private final BlockingQueue<String> requestedCursors = new LinkedBlockingQueue<>();
+
+
+	@Test
+	public void nextPageReadAhead() throws Exception {
+		try (PrefetchingIssuePaginator paginator = new PrefetchingIssuePaginator(new TestReader(), null, null)) {
+			assertThat(this.requestedCursors.poll(5, TimeUnit.SECONDS)).isEqualTo("start");
+			assertThat(paginator.hasNext()).isTrue();
+			assertThat(paginator.next().getEndCursor()).isEqualTo("1");
+
+			// Page 2 requested before it's needed
+			assertThat(this.requestedCursors.poll(5, TimeUnit.SECONDS)).isEqualTo("1");
+			assertThat(paginator.next().getEndCursor()).isEqualTo("2");
+			assertThat(paginator.hasNext()).isTrue();
+			assertThat(paginator.next().getEndCursor()).isEqualTo("3");
+			assertThat(paginator.hasNext()).isFalse();
+		}
+	}
+
+	@Test
+	public void startFromCursor() {
+		try (PrefetchingIssuePaginator paginator = new PrefetchingIssuePaginator(new TestReader(), null, "2")) {
+			assertThat(paginator.next().getEndCursor()).isEqualTo("3");
+			assertThat(paginator.hasNext()).isFalse();
+		}
+	}
+
+
+	/**
+	 * Reader with 3 pages, each using the page number as the end cursor.
+	 */
+	private class TestReader extends GitHubGraphQlReader {
+
+		TestReader() {
+			super(null, "http://localhost/graphql", "token", "spring-projects/test", 1);
+		}
+
+		@Override
+		public IssuePage readIssuePage(List<String> labels, String cursor) {
+			requestedCursors.add(cursor != null ? cursor : "start");
+			int page = (cursor != null ? Integer.parseInt(cursor) + 1 : 1);
+			return new IssuePage(Collections.emptyList(), String.valueOf(page), page < 3);
+		}
+	}
+
+}
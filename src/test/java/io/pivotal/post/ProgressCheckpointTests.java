@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.post;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProgressCheckpointTests {
+
+	@TempDir
+	Path tempDir;
+
+
+	@Test
+	public void completedItemsSurviveReopen() throws Exception {
+		File file = this.tempDir.resolve("progress.txt").toFile();
+		try (ProgressCheckpoint checkpoint = new ProgressCheckpoint(file)) {
+			assertThat(checkpoint.isCompleted("SPR-1")).isFalse();
+			checkpoint.addCompleted("SPR-1");
+			checkpoint.addCompleted("SPR-2");
+			checkpoint.addCompleted("SPR-1");
+			assertThat(checkpoint.isCompleted("SPR-1")).isTrue();
+		}
+		try (ProgressCheckpoint checkpoint = new ProgressCheckpoint(file)) {
+			assertThat(checkpoint.getCompletedCount()).isEqualTo(2);
+			assertThat(checkpoint.isCompleted("SPR-2")).isTrue();
+			assertThat(checkpoint.isCompleted("SPR-3")).isFalse();
+		}
+	}
+
+	@Test
+	public void laterValueTakesPrecedence() throws Exception {
+		File file = this.tempDir.resolve("progress.txt").toFile();
+		try (ProgressCheckpoint checkpoint = new ProgressCheckpoint(file)) {
+			checkpoint.addCompleted("issue:1", "a");
+			checkpoint.addCompleted("issue:1", "b");
+			checkpoint.addCompleted("issue:2");
+		}
+		try (ProgressCheckpoint checkpoint = new ProgressCheckpoint(file)) {
+			assertThat(checkpoint.getValue("issue:1")).isEqualTo("b");
+			assertThat(checkpoint.getValue("issue:2")).isEmpty();
+			assertThat(checkpoint.getValue("issue:3")).isNull();
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+public class IssueMappingIndexTests {
+
+	@TempDir
+	Path tempDir;
+
+
+	@Test
+	public void putAndGet() {
+		IssueMappingIndex index = new IssueMappingIndex();
+		index.put("SPR-1", 101);
+		index.put("SPR-2", 102);
+		index.put("SWF-1", 201);
+		index.put("SPR-1", 111);
+
+		assertThat(index.size()).isEqualTo(3);
+		assertThat(index.get("SPR-1")).isEqualTo(111);
+		assertThat(index.get("SWF-1")).isEqualTo(201);
+		assertThat(index.get("SPR-3")).isEqualTo(IssueMappingIndex.NO_MAPPING);
+		assertThat(index.get("DATAJPA-1")).isEqualTo(IssueMappingIndex.NO_MAPPING);
+		assertThat(index.get("SPR-x")).isEqualTo(IssueMappingIndex.NO_MAPPING);
+		assertThat(index.containsKey("SPR-2")).isTrue();
+	}
+
+	@Test
+	public void getRegion() {
+		IssueMappingIndex index = IssueMappingIndex.from(Map.of("SPR-1234", 5));
+		String text = "See SPR-1234 and SPR-12345";
+		assertThat(index.get(text, 4, 12)).isEqualTo(5);
+		assertThat(index.get(text, 17, 26)).isEqualTo(IssueMappingIndex.NO_MAPPING);
+	}
+
+	@Test
+	public void invalidKey() {
+		IssueMappingIndex index = new IssueMappingIndex();
+		assertThatIllegalArgumentException().isThrownBy(() -> index.put("SPR1", 1));
+		assertThatIllegalArgumentException().isThrownBy(() -> index.put("SPR-1", -1));
+	}
+
+	@Test
+	public void growsAndMatchesMap() {
+		IssueMappingIndex index = new IssueMappingIndex(4);
+		Map<String, Integer> expected = new HashMap<>();
+		for (int i = 1; i <= 10000; i++) {
+			String key = (i % 3 == 0 ? "DATAREST-" : "SPR-") + i;
+			index.put(key, i * 2);
+			expected.put(key, i * 2);
+		}
+		assertThat(index.size()).isEqualTo(expected.size());
+		Map<String, Integer> actual = new HashMap<>();
+		index.forEach(actual::put);
+		assertThat(actual).isEqualTo(expected);
+	}
+
+	@Test
+	public void contentHash() {
+		IssueMappingIndex index = new IssueMappingIndex();
+		index.put("SPR-1", 1);
+		index.put("SWF-2", 2);
+		IssueMappingIndex other = new IssueMappingIndex();
+		other.put("SWF-2", 2);
+		other.put("SPR-1", 1);
+		assertThat(index.contentHash()).isEqualTo(other.contentHash());
+
+		other.put("SPR-1", 3);
+		assertThat(index.contentHash()).isNotEqualTo(other.contentHash());
+	}
+
+	@Test
+	public void writeAndRead() throws Exception {
+		IssueMappingIndex index = IssueMappingIndex.from(Map.of("SPR-1", 1, "SWF-22", 2, "SEC-333", 3));
+		File file = this.tempDir.resolve("mappings.bin").toFile();
+		index.write(file);
+
+		IssueMappingIndex copy = IssueMappingIndex.read(file);
+		assertThat(copy.size()).isEqualTo(3);
+		assertThat(copy.get("SWF-22")).isEqualTo(2);
+		assertThat(copy.get("SEC-333")).isEqualTo(3);
+	}
+
+	@Test
+	public void loadSavesBinaryCopy() throws Exception {
+		File file = this.tempDir.resolve("mappings.properties").toFile();
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write("SPR-1:11\nSPR-2:12\n");
+		}
+		file.setLastModified(System.currentTimeMillis() - 10000);
+
+		IssueMappingIndex index = IssueMappingIndex.load(file);
+		assertThat(index.get("SPR-2")).isEqualTo(12);
+
+		File binaryFile = new File(file.getPath() + ".bin");
+		assertThat(binaryFile).exists();
+		IssueMappingIndex.from(Map.of("SPR-3", 13)).write(binaryFile);
+		assertThat(IssueMappingIndex.load(file).get("SPR-3")).isEqualTo(13);
+
+		// Properties file updated after the binary copy
+		file.setLastModified(binaryFile.lastModified() + 10000);
+		assertThat(IssueMappingIndex.load(file).get("SPR-3")).isEqualTo(IssueMappingIndex.NO_MAPPING);
+	}
+
+}
@@ -15,14 +15,23 @@
  */
 package io.pivotal.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import io.pivotal.jira.JiraConfig;
 import io.pivotal.jira.JiraUser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -691,6 +700,31 @@ public class MarkdownEngineTests {
 				"import java.util.*;\n");
 	}
 
+	@Test
+	@Timeout(30)
+	public void emphasisMultilineManyDelimiters() {
+		// Each pass pairs up the remaining "*" and escapes the opening one of each pair,
+		// so the number left halves with every pass, and 4000 take 12 passes.
+		// As in emphasisMultiline, the last "*" has nothing to pair with.
+		String body = "import java.io.*;\nimport org.springframework.core.io.*;\n".repeat(2000);
+		String result = engine.convert(body);
+		String unescaped = result.replace("\\*", "");
+		assertThat(result.length() - unescaped.length()).isEqualTo(2 * 3999);
+		assertThat(unescaped.indexOf('*')).isEqualTo(unescaped.lastIndexOf('*'));
+		assertThat(result).endsWith("import org.springframework.core.io.*;\n");
+		assertThat(result.lines().count()).isEqualTo(4000);
+	}
+
+	@Test
+	public void emphasisMultilineCascadePastMaxPasses() {
+		// A single closing "*" pairs with the nearest opening "*" before it,
+		// so each pass escapes only one of them and exposes the next one
+		String body = "*a\n".repeat(MarkdownEngine.MAX_PHASE1_PASSES + 1) + "a*";
+		// After the last pass, the first "*" remains and phase 2 makes the rest bold
+		assertThat(engine.convert(body)).isEqualTo(
+				"**a\n" + "\\*a\n".repeat(MarkdownEngine.MAX_PHASE1_PASSES) + "a**\n");
+	}
+
 	@Test
 	public void emphasisWithUserMention() {
 		String body =
@@ -1343,4 +1377,42 @@ public class MarkdownEngineTests {
 						"representation `{\"complaint\":{\"claim\":\"1\"},\"version\":{\"expression\":\"mld\",\"actionTaken\":\"mld\"}}`.\n");
 	}
 
+	@Test
+	public void convertConcurrently() throws Exception {
+		engine.configureUserLookup(Collections.singletonMap(
+				"juergen.hoeller", user("juergen.hoeller", "Juergen Hoeller")));
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			inputs.add("h2. Heading " + i + "\n" +
+					"# First *item* for SPR-" + i + "\n" +
+					"#- Nested with {{code " + i + "}} and @Value\n" +
+					"* [~juergen.hoeller] see [link|https://example.org/" + i + "]\n" +
+					"{code:java}\nint i = " + i + ";\n{code}\n" +
+					"bq. Quoted _text_ " + i + "\n" +
+					"||a||b||\n|" + i + "|-" + i + "-|\n");
+		}
+		List<String> expected = inputs.stream().map(engine::convert).collect(Collectors.toList());
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					List<String> actual = new ArrayList<>();
+					for (int j = 0; j < 10; j++) {
+						actual.clear();
+						inputs.forEach(input -> actual.add(engine.convert(input)));
+					}
+					return actual;
+				}));
+			}
+			for (Future<List<String>> future : futures) {
+				assertThat(future.get(30, TimeUnit.SECONDS)).isEqualTo(expected);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.pivotal.util.RateLimitHelper.RequestClass;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitHelperTests {
+
+	private final AtomicLong nanoTime = new AtomicLong();
+
+
+	@Test
+	public void createsAndUpdatesSpacedTogether() {
+		Map<RequestClass, TokenBucket> buckets = new EnumMap<>(RequestClass.class);
+		buckets.put(RequestClass.CREATE, new TokenBucket(1, Duration.ofSeconds(1), nanoTime::get));
+		buckets.put(RequestClass.UPDATE, new TokenBucket(1, Duration.ofSeconds(1), nanoTime::get));
+		buckets.put(RequestClass.READ, new TokenBucket(10, Duration.ofMillis(100), nanoTime::get));
+		RateLimitHelper helper = new RateLimitHelper(buckets, new TokenBucket(1, Duration.ofSeconds(1), nanoTime::get));
+
+		assertThat(helper.reservePermitToCall(RequestClass.CREATE)).isEqualTo(Duration.ZERO);
+		assertThat(helper.reservePermitToCall(RequestClass.UPDATE)).isEqualTo(Duration.ofSeconds(1));
+		assertThat(helper.reservePermitToCall(RequestClass.CREATE)).isEqualTo(Duration.ofSeconds(2));
+		assertThat(helper.reservePermitToCall(RequestClass.UPDATE)).isEqualTo(Duration.ofSeconds(3));
+
+		// Reads don't wait behind them
+		assertThat(helper.reservePermitToCall(RequestClass.READ)).isEqualTo(Duration.ZERO);
+
+		nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+		assertThat(helper.reservePermitToCall(RequestClass.UPDATE)).isEqualTo(Duration.ZERO);
+		assertThat(helper.reservePermitToCall(RequestClass.CREATE)).isEqualTo(Duration.ofSeconds(1));
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server for tests to use in place of Jira or GitHub.
+ * <p>Requests are handled on a thread pool, so a slow response does not
+ * hold up other requests sent concurrently.
+ */
+public class StubHttpServer {
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+
+	private StubHttpServer(HttpServer server, ExecutorService executor) {
+		this.server = server;
+		this.executor = executor;
+	}
+
+
+	/**
+	 * Start a server on a free local port.
+	 */
+	public static StubHttpServer start() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+		return new StubHttpServer(server, executor);
+	}
+
+	/**
+	 * Handle requests for the given path, and any path under it.
+	 */
+	public StubHttpServer handle(String path, HttpHandler handler) {
+		this.server.createContext(path, handler);
+		return this;
+	}
+
+	/**
+	 * Return the base URL of the server, e.g. "http://127.0.0.1:54321".
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort();
+	}
+
+	public void stop() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+
+	public static void writeJson(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] content = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, content.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(content);
+		}
+	}
+
+}
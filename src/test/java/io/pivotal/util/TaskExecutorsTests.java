@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIf;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TaskExecutors}.
+ */
+public class TaskExecutorsTests {
+
+	@Test
+	public void threadPool() {
+		ExecutorService executor = TaskExecutors.newBlockingTaskExecutor(3, false);
+		try {
+			assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+			assertThat(((ThreadPoolExecutor) executor).getCorePoolSize()).isEqualTo(3);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	@EnabledIf("io.pivotal.util.TaskExecutors#isVirtualThreadSupported")
+	public void virtualThreads() throws Exception {
+		ExecutorService executor = TaskExecutors.newBlockingTaskExecutor(3, true);
+		try {
+			Object isVirtual = executor.submit(() ->
+					Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get();
+			assertThat(isVirtual).isEqualTo(true);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	@DisabledIf("io.pivotal.util.TaskExecutors#isVirtualThreadSupported")
+	public void virtualThreadsFallbackToThreadPool() {
+		ExecutorService executor = TaskExecutors.newBlockingTaskExecutor(3, true);
+		try {
+			assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
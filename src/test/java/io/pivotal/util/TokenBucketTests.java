@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pivotal.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTests {
+
+	private final AtomicLong nanoTime = new AtomicLong();
+
+
+	@Test
+	public void burstUpToCapacity() {
+		TokenBucket bucket = new TokenBucket(3, Duration.ofSeconds(1), nanoTime::get);
+		assertThat(bucket.reserve()).isEqualTo(Duration.ZERO);
+		assertThat(bucket.reserve()).isEqualTo(Duration.ZERO);
+		assertThat(bucket.reserve()).isEqualTo(Duration.ZERO);
+		assertThat(bucket.reserve()).isEqualTo(Duration.ofSeconds(1));
+	}
+
+	@Test
+	public void reservationsQueueUp() {
+		TokenBucket bucket = new TokenBucket(1, Duration.ofSeconds(1), nanoTime::get);
+		assertThat(bucket.reserve()).isEqualTo(Duration.ZERO);
+		assertThat(bucket.reserve()).isEqualTo(Duration.ofSeconds(1));
+		assertThat(bucket.reserve()).isEqualTo(Duration.ofSeconds(2));
+	}
+
+	@Test
+	public void refillOverTime() {
+		TokenBucket bucket = new TokenBucket(1, Duration.ofSeconds(1), nanoTime::get);
+		assertThat(bucket.reserve()).isEqualTo(Duration.ZERO);
+
+		nanoTime.addAndGet(Duration.ofMillis(400).toNanos());
+		assertThat(bucket.reserve()).isEqualTo(Duration.ofMillis(600));
+
+		nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+		assertThat(bucket.reserve()).isEqualTo(Duration.ZERO);
+		assertThat(bucket.reserve()).isEqualTo(Duration.ofSeconds(1));
+	}
+
+}